@@ -4,6 +4,7 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,9 +23,17 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.name}")  // Changed to match your YAML
     private String routingKey;
 
+    // Messages the ai-service listener gave up on after its retries
+    @Value("${rabbitmq.dead-letter.exchange:fitness.exchange.dlx}")
+    private String deadLetterExchange;
+
+    // Must match the ai-service declaration, which also sets up the dead-letter exchange and queue
     @Bean
     public Queue activityQueue(){
-        return new Queue(queue, true);
+        return QueueBuilder.durable(queue)
+                .deadLetterExchange(deadLetterExchange)
+                .deadLetterRoutingKey(routingKey)
+                .build();
     }
 
     @Bean
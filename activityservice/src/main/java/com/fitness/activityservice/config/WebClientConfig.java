@@ -1,5 +1,7 @@
 package com.fitness.activityservice.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,13 +12,17 @@ public class WebClientConfig {
 
     @Bean
     @LoadBalanced
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(ObjectProvider<WebClientCustomizer> customizers) {
+        WebClient.Builder builder = WebClient.builder();
+        // Boot's customizers include the observation filter that propagates trace headers
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        return builder;
     }
 
     @Bean  // <- This was missing!
-    public WebClient userServiceWebClient(WebClient.Builder webClientBuilder) {
-        return webClientBuilder
+    public WebClient userServiceWebClient(WebClient.Builder webClientBuilder, HttpClientPools pools) {
+        return webClientBuilder.clone()
+                .clientConnector(pools.connector("user-service"))
                 .baseUrl("http://USER-SERVICE")
                 .build();
     }
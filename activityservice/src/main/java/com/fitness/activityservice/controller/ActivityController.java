@@ -1,12 +1,21 @@
 package com.fitness.activityservice.controller;
 
+import com.fitness.activityservice.dto.ActivityBatchRequest;
+import com.fitness.activityservice.dto.ActivityBatchResponse;
+import com.fitness.activityservice.dto.ActivityPageResponse;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.model.RollupPeriod;
 import com.fitness.activityservice.service.ActivityService;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -20,11 +29,38 @@ public class ActivityController {
         return ResponseEntity.ok(activityService.trackActivity(request));
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<ActivityBatchResponse> trackActivities(@RequestBody ActivityBatchRequest request){
+        return ResponseEntity.ok(activityService.trackActivities(request));
+    }
+
     @GetMapping
     public ResponseEntity<List<ActivityResponse>> getUserActivities(@RequestHeader("X-User-ID") String userId){
         return ResponseEntity.ok(activityService.getUserActivities(userId));
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<ActivityPageResponse> getUserActivitiesPage(@RequestHeader("X-User-ID") String userId,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "50") int limit){
+        return ResponseEntity.ok(activityService.getUserActivitiesPage(userId, cursor, limit));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<ActivityStatsResponse> getUserStats(@RequestHeader("X-User-ID") String userId,
+                                                              @RequestParam(defaultValue = "WEEK") RollupPeriod period,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        return ResponseEntity.ok(activityService.getUserStats(userId, period, from, to));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserActivities(@RequestHeader("X-User-ID") String userId){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> activityService.streamUserActivities(userId, out));
+    }
+
     @GetMapping("/{activityId}")
     public ResponseEntity<ActivityResponse> getActivities(@PathVariable String activityId){
         return ResponseEntity.ok(activityService.getActivityById(activityId));
@@ -0,0 +1,25 @@
+package com.fitness.activityservice.controller;
+
+import com.fitness.activityservice.dto.RollupBackfillResult;
+import com.fitness.activityservice.service.ActivityRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.Access;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+// POST /actuator/rollupbackfill rebuilds activity_rollups from the activities collection. Kept on the
+// management surface, which the gateway doesn't route, since it is an operator task. The management
+// port is unauthenticated, so the endpoint is off unless management.endpoint.rollupbackfill.access
+// is set to unrestricted and it is added to the web exposure, on the instance that should run it.
+@Component
+@Endpoint(id = "rollupbackfill", defaultAccess = Access.NONE)
+@RequiredArgsConstructor
+public class RollupBackfillEndpoint {
+    private final ActivityRollupService activityRollupService;
+
+    @WriteOperation
+    public RollupBackfillResult backfill() {
+        return activityRollupService.backfill();
+    }
+}
@@ -0,0 +1,23 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityBatchItemResult {
+    private int index;
+    private boolean success;
+    private ActivityResponse activity;
+    private String error;
+
+    public static ActivityBatchItemResult success(int index, ActivityResponse activity) {
+        return new ActivityBatchItemResult(index, true, activity, null);
+    }
+
+    public static ActivityBatchItemResult failure(int index, String error) {
+        return new ActivityBatchItemResult(index, false, null, error);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ActivityBatchResponse {
+    private int accepted;
+    private int rejected;
+    private List<ActivityBatchItemResult> results;
+}
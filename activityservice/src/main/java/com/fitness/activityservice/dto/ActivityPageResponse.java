@@ -0,0 +1,16 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityPageResponse {
+    private List<ActivityResponse> activities;
+    // Opaque keyset cursor for the next page, null when there are no more activities
+    private String nextCursor;
+}
@@ -0,0 +1,20 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.RollupPeriod;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class ActivityStatsResponse {
+    private String userId;
+    private RollupPeriod period;
+    private LocalDate from;
+    private LocalDate to;
+    private List<ActivityStatsBucket> buckets;
+    private List<ActivityStatsBucket> totals;
+    // Consecutive days with at least one activity, ending on the to date
+    private int currentStreakDays;
+    private int longestStreakDays;
+}
@@ -0,0 +1,15 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupBackfillResult {
+    private long users;
+    private long activities;
+    private long rollups;
+    private long durationMillis;
+}
@@ -0,0 +1,205 @@
+package com.fitness.activityservice.loadbalancer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Per-instance load and health as seen by this client, fed by the load balancer lifecycle of every
+// load-balanced call: requests in flight, a peak-EWMA of response latency, and
+// consecutive failures. An instance that fails failureThreshold times in a row (connection errors,
+// 502/503/504) is ejected for ejectionDuration. Server-sent event streams (Accept: text/event-stream)
+// stay open for as long as the client listens, so they only count towards failures, not towards
+// requests in flight or latency.
+@Slf4j
+public class InstanceLoadTracker implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+    // Latency assumed for instances without recent samples, so new ones are tried without being flooded
+    private static final double MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long decayNanos;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final MeterRegistry meterRegistry;
+
+    private final Cache<String, InstanceStats> instances = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    // Requests the balancer handed out, by identity. Cancelled requests are never reported back, so
+    // entries also leave when the request is collected or too old, releasing their in-flight slot.
+    private final Cache<Request<?>, Outstanding> outstanding;
+
+    public InstanceLoadTracker(Duration decay, int failureThreshold, Duration ejectionDuration,
+                               Duration maxRequestAge, MeterRegistry meterRegistry) {
+        this.decayNanos = decay.toNanos();
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = ejectionDuration.toNanos();
+        this.meterRegistry = meterRegistry;
+        this.outstanding = Caffeine.newBuilder()
+                .weakKeys()
+                .expireAfterWrite(maxRequestAge)
+                .scheduler(Scheduler.systemScheduler())
+                .<Request<?>, Outstanding>removalListener((request, lost, cause) -> {
+                    if (cause.wasEvicted() && lost != null) {
+                        lost.stats().inFlight.decrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer() || isStream(request)) {
+            return;
+        }
+        InstanceStats stats = stats(lbResponse.getServer());
+        stats.inFlight.incrementAndGet();
+        outstanding.put(request, new Outstanding(stats, System.nanoTime()));
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        if (isStream(completionContext.getLoadBalancerRequest())) {
+            onStreamComplete(completionContext);
+            return;
+        }
+        Outstanding request = outstanding.asMap().remove(completionContext.getLoadBalancerRequest());
+        if (request == null) {
+            // Discarded without an instance, or already released as lost
+            return;
+        }
+        InstanceStats stats = request.stats();
+        stats.inFlight.decrementAndGet();
+        long now = System.nanoTime();
+        if (isUnhealthy(completionContext)) {
+            onFailure(completionContext.getLoadBalancerResponse().getServer(), stats, now);
+            return;
+        }
+        stats.consecutiveFailures.set(0);
+        stats.observe(now - request.started(), now, decayNanos);
+    }
+
+    private void onStreamComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse != null && lbResponse.hasServer() && isUnhealthy(completionContext)) {
+            ServiceInstance instance = lbResponse.getServer();
+            onFailure(instance, stats(instance), System.nanoTime());
+        }
+    }
+
+    public boolean isEjected(ServiceInstance instance, long now) {
+        InstanceStats stats = instances.getIfPresent(key(instance));
+        return stats != null && now - stats.ejectedUntil < 0;
+    }
+
+    // Expected wait for a new request: recent latency, scaled by the requests already queued on the instance
+    public double cost(ServiceInstance instance, long now) {
+        InstanceStats stats = stats(instance);
+        return Math.max(stats.latency(now, decayNanos), MIN_LATENCY_NANOS) * (stats.inFlight.get() + 1);
+    }
+
+    private void onFailure(ServiceInstance instance, InstanceStats stats, long now) {
+        if (stats.consecutiveFailures.incrementAndGet() < failureThreshold) {
+            return;
+        }
+        stats.consecutiveFailures.set(0);
+        stats.ejectedUntil = now + ejectionNanos;
+        log.warn("Ejecting {} instance {}:{} for {} ms after {} consecutive failures", instance.getServiceId(),
+                instance.getHost(), instance.getPort(), TimeUnit.NANOSECONDS.toMillis(ejectionNanos), failureThreshold);
+        if (meterRegistry != null) {
+            Counter.builder("loadbalancer.instance.ejections")
+                    .description("Instances taken out of rotation after consecutive failures")
+                    .tag("service", instance.getServiceId())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private InstanceStats stats(ServiceInstance instance) {
+        return instances.get(key(instance), key -> new InstanceStats());
+    }
+
+    private static boolean isUnhealthy(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> context) {
+        if (context.status() == CompletionContext.Status.FAILED) {
+            return true;
+        }
+        ResponseData response = context.getClientResponse();
+        HttpStatusCode status = response != null ? response.getHttpStatus() : null;
+        return status != null && (status.value() == 502 || status.value() == 503 || status.value() == 504);
+    }
+
+    private static boolean isStream(Request<RequestDataContext> request) {
+        RequestDataContext context = request != null ? request.getContext() : null;
+        RequestData data = context != null ? context.getClientRequest() : null;
+        return data != null && data.getHeaders() != null
+                && data.getHeaders().getAccept().stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getServiceId() + "@" + instance.getHost() + ":" + instance.getPort();
+    }
+
+    private record Outstanding(InstanceStats stats, long started) {
+    }
+
+    static final class InstanceStats {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicReference<Ewma> latency = new AtomicReference<>(new Ewma(0, System.nanoTime()));
+        private volatile long ejectedUntil = System.nanoTime();
+
+        // Peak-EWMA: a slower sample is taken as is, faster ones pull the average down over the decay time
+        void observe(long latencyNanos, long now, long decayNanos) {
+            latency.updateAndGet(current -> {
+                double weight = weight(current.stamp(), now, decayNanos);
+                double updated = latencyNanos > current.nanos()
+                        ? latencyNanos
+                        : current.nanos() * weight + latencyNanos * (1 - weight);
+                return new Ewma(updated, now);
+            });
+        }
+
+        // Decays while no samples arrive, so a slow instance is retried once it has been idle a while
+        double latency(long now, long decayNanos) {
+            return latency.get().decayed(now, decayNanos);
+        }
+
+        private static double weight(long stamp, long now, long decayNanos) {
+            return Math.exp(-(double) Math.max(now - stamp, 0) / decayNanos);
+        }
+
+        private record Ewma(double nanos, long stamp) {
+            double decayed(long now, long decayNanos) {
+                return nanos * weight(stamp, now, decayNanos);
+            }
+        }
+    }
+}
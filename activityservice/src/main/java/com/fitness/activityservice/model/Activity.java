@@ -1,5 +1,6 @@
 package com.fitness.activityservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import org.springframework.data.annotation.Id;
 import lombok.AllArgsConstructor;
@@ -8,6 +9,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -15,8 +18,9 @@ import java.time.LocalDateTime;
 import java.util.Map;
 
 @Document(collection = "activities")
+@CompoundIndex(name = "user_start_time_idx", def = "{'userId': 1, 'startTime': -1, '_id': -1}")
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Activity {
@@ -36,9 +40,43 @@ public class Activity {
     @Field("additionalMetrics") // Fixed field name
     private Map<String, Object> additionalMatrices;
 
+    // Long numeric arrays moved out of additionalMatrices when compact storage is enabled; merged
+    // back into the metrics of ActivityResponse and of the rabbitmq event (see SampleSeriesCodec#expand).
+    @JsonIgnore
+    private Map<String, SampleSeries> sampleSeries;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
     @LastModifiedDate
     private LocalDateTime updatedAt;
+
+    // Outbox marker: set when the activity is saved, removed once the event is confirmed by rabbitmq
+    @JsonIgnore
+    @Indexed(sparse = true)
+    private Boolean eventPending;
+
+    // Trace headers of the tracking request, so the relay publishes the event within the same
+    // trace. Removed together with eventPending.
+    @JsonIgnore
+    private Map<String, String> traceContext;
+
+    // Relay batch currently publishing the event, and when its claim lapses so another relay may take over
+    @JsonIgnore
+    private String outboxClaim;
+
+    @JsonIgnore
+    private LocalDateTime outboxLeaseUntil;
+
+    // Failed publish attempts of this event alone; at the limit it is parked instead of retried
+    @JsonIgnore
+    private Integer outboxAttempts;
+
+    // Set instead of eventPending on an event that could not be published, with the last error
+    @JsonIgnore
+    @Indexed(sparse = true)
+    private Boolean eventParked;
+
+    @JsonIgnore
+    private String eventError;
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+
+// Running totals of one user's activities of one type within a day, week or month. The id is
+// derived from those keys so tracking can $inc the bucket with an upsert.
+@Document(collection = "activity_rollups")
+@CompoundIndex(name = "user_period_start_idx", def = "{'userId': 1, 'period': 1, 'periodStart': 1}")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityRollup {
+    @Id
+    private String id;
+
+    private String userId;
+    private RollupPeriod period;
+    private LocalDate periodStart;
+    private ActivityType type;
+
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+
+    public static String idFor(String userId, RollupPeriod period, LocalDate periodStart, ActivityType type) {
+        return userId + ":" + period + ":" + periodStart + ":" + type;
+    }
+}
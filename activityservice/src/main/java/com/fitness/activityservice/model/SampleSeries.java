@@ -0,0 +1,24 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A numeric sample series (heart rate, pace, cadence...) stored as one BSON binary instead of an
+// array of boxed values: values are scaled to integers by 10^decimals, delta encoded and written
+// as zigzag varints. See SampleSeriesCodec.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SampleSeries {
+    public static final String DELTA_VARINT = "delta-varint";
+
+    private String encoding;
+    private int count;
+    private int decimals;
+    // Samples were floating-point numbers, so they decode to doubles even when decimals is 0
+    private boolean floating;
+    private byte[] data;
+}
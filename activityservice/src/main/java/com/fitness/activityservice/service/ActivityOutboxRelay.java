@@ -0,0 +1,248 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drains activities marked eventPending to rabbitmq. Each batch is claimed under a lease, so several
+// activity-service instances can run the relay side by side. Delivery is still at-least-once: a crash
+// between the broker confirm and the Mongo update re-sends the batch once the lease lapses, and the
+// aiservice listener ignores events for activities that already have a recommendation.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityOutboxRelay {
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.name}")
+    private String routingKey;
+
+    @Value("${activity.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${activity.outbox.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
+    // How long a claimed batch is reserved for this relay; must comfortably exceed a batch publish
+    @Value("${activity.outbox.lease:30s}")
+    private Duration lease;
+
+    @Value("${activity.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    private final MongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final TraceContextPropagation traceContextPropagation;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong relayLagMillis = new AtomicLong();
+    private Counter publishedCounter;
+    private Counter failedCounter;
+    private Counter parkedCounter;
+    private Timer publishTimer;
+    private Timer dwellTimer;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("activity.outbox.lag", relayLagMillis, AtomicLong::get)
+                .description("Age of the oldest activity event waiting to be published")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        publishedCounter = Counter.builder("activity.outbox.published")
+                .description("Activity events confirmed by rabbitmq")
+                .register(meterRegistry);
+        publishTimer = Timer.builder("activity.outbox.publish")
+                .description("Time to publish a batch of activity events and receive the broker confirms")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        dwellTimer = Timer.builder("activity.outbox.dwell")
+                .description("Time from an activity being saved to its event being handed to rabbitmq")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        failedCounter = Counter.builder("activity.outbox.failed")
+                .description("Activity events that failed to publish and will be retried")
+                .register(meterRegistry);
+        parkedCounter = Counter.builder("activity.outbox.parked")
+                .description("Activity events given up on after repeated publish failures")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${activity.outbox.poll-interval:500ms}")
+    public void relay() {
+        // Keep draining while full batches are going through
+        while (relayBatch() == batchSize) {
+            log.debug("Outbox batch full, draining again");
+        }
+    }
+
+    private int relayBatch() {
+        List<Activity> claimed = claimBatch();
+        if (claimed.isEmpty()) {
+            relayLagMillis.set(0);
+            return 0;
+        }
+
+        LocalDateTime oldest = claimed.get(0).getCreatedAt();
+        relayLagMillis.set(oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0);
+
+        List<String> sent = new ArrayList<>();
+        Map<String, RuntimeException> failed = new LinkedHashMap<>();
+        boolean confirmed;
+        long publishStart = System.nanoTime();
+        try {
+            confirmed = rabbitTemplate.invoke(operations -> {
+                // Each send continues the trace of the request that tracked the activity; the
+                // timestamp lets the consumer measure the time spent in the broker. One event that
+                // can't be sent doesn't hold back the others.
+                claimed.forEach(activity -> traceContextPropagation.runWithin(activity.getTraceContext(),
+                        "activity outbox publish", () -> {
+                            try {
+                                operations.convertAndSend(exchange, routingKey, event(activity), message -> {
+                                    message.getMessageProperties().setTimestamp(new Date());
+                                    return message;
+                                });
+                                recordDwell(activity);
+                                sent.add(activity.getId());
+                            } catch (RuntimeException e) {
+                                failed.put(activity.getId(), e);
+                            }
+                        }));
+                return sent.isEmpty() || operations.waitForConfirms(confirmTimeout.toMillis());
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish {} activities to rabbitmq, will retry: {}", claimed.size(), e.getMessage());
+            confirmed = false;
+        } finally {
+            publishTimer.record(System.nanoTime() - publishStart, TimeUnit.NANOSECONDS);
+        }
+
+        if (!confirmed) {
+            // Not confirmed as a whole: the broker's problem rather than the events', so retry them all
+            failedCounter.increment(claimed.size());
+            release(claimed.stream().map(Activity::getId).toList());
+            return 0;
+        }
+        if (!sent.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(sent)),
+                    new Update().unset("eventPending").unset("traceContext").unset("outboxClaim")
+                            .unset("outboxLeaseUntil").unset("outboxAttempts"),
+                    Activity.class);
+            publishedCounter.increment(sent.size());
+            log.debug("Published {} activities to rabbitmq", sent.size());
+        }
+        if (!failed.isEmpty()) {
+            failedCounter.increment(failed.size());
+            if (sent.isEmpty()) {
+                // Nothing went through, most likely the connection; don't hold it against the events
+                log.warn("Failed to publish {} activities to rabbitmq, will retry: {}", failed.size(),
+                        failed.values().iterator().next().getMessage());
+                release(List.copyOf(failed.keySet()));
+            } else {
+                recordFailures(failed);
+            }
+        }
+        return claimed.size();
+    }
+
+    // Claims up to batchSize pending events whose lease has lapsed. The conditional update takes each
+    // event atomically, so concurrent relays on other instances publish disjoint batches; a relay that
+    // dies mid-batch leaves its claim to expire after the lease.
+    private List<Activity> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria claimable = new Criteria().andOperator(
+                Criteria.where("eventPending").is(true),
+                new Criteria().orOperator(
+                        Criteria.where("outboxLeaseUntil").exists(false),
+                        Criteria.where("outboxLeaseUntil").lt(now)));
+        Query candidates = Query.query(claimable)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, Activity.class).stream().map(Activity::getId).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String claim = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(Criteria.where("_id").in(ids), claimable)),
+                new Update().set("outboxClaim", claim).set("outboxLeaseUntil", now.plus(lease)), Activity.class);
+        return mongoTemplate.find(Query.query(Criteria.where("outboxClaim").is(claim))
+                .with(Sort.by(Sort.Direction.ASC, "_id")), Activity.class);
+    }
+
+    private void release(List<String> ids) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                new Update().unset("outboxClaim").unset("outboxLeaseUntil"), Activity.class);
+    }
+
+    // Events that failed while others in the same batch went through are retried after the lease,
+    // and parked once they reach maxAttempts so a poison event can't be retried forever
+    private void recordFailures(Map<String, RuntimeException> failed) {
+        failed.forEach((id, error) -> {
+            log.warn("Failed to publish activity {} to rabbitmq: {}", id, error.getMessage());
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                    new Update().inc("outboxAttempts", 1).set("eventError", String.valueOf(error.getMessage())),
+                    Activity.class);
+        });
+        Query exhausted = Query.query(new Criteria().andOperator(
+                Criteria.where("_id").in(failed.keySet()),
+                Criteria.where("outboxAttempts").gte(maxAttempts)));
+        long parked = mongoTemplate.updateMulti(exhausted,
+                new Update().unset("eventPending").unset("outboxClaim").unset("outboxLeaseUntil")
+                        .set("eventParked", true),
+                Activity.class).getModifiedCount();
+        if (parked > 0) {
+            parkedCounter.increment(parked);
+            log.error("Parked {} activity events after {} failed publish attempts; they stay in the "
+                    + "activities collection with eventParked set", parked, maxAttempts);
+        }
+    }
+
+    // The event carries the metrics as tracked: compact sample series go back into additionalMatrices,
+    // since they feed the recommendation prompt
+    private static Activity event(Activity activity) {
+        if (activity.getSampleSeries() == null || activity.getSampleSeries().isEmpty()) {
+            return activity;
+        }
+        return activity.toBuilder()
+                .additionalMatrices(SampleSeriesCodec.expand(activity.getAdditionalMatrices(), activity.getSampleSeries()))
+                .sampleSeries(null)
+                .build();
+    }
+
+    private void recordDwell(Activity activity) {
+        if (activity.getCreatedAt() != null) {
+            Duration dwell = Duration.between(activity.getCreatedAt(), LocalDateTime.now());
+            if (!dwell.isNegative()) {
+                dwellTimer.record(dwell);
+            }
+        }
+    }
+}
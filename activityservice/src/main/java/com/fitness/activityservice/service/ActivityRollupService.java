@@ -0,0 +1,288 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityStatsBucket;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.RollupBackfillResult;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.RollupPeriod;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Maintains per-user day/week/month totals per activity type in activity_rollups, so stats are
+// read from a handful of buckets instead of the user's whole activity history
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityRollupService {
+
+    @Value("${activity.stats.max-periods:366}")
+    private int maxPeriods;
+
+    @Value("${activity.rollup.backfill.parallelism:4}")
+    private int backfillParallelism;
+
+    @Value("${activity.rollup.backfill.chunk-size:500}")
+    private int backfillChunkSize;
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Counter failedUpdates;
+
+    @PostConstruct
+    void registerMetrics() {
+        failedUpdates = Counter.builder("activity.rollup.failed")
+                .description("Activities whose rollup update failed; repaired by the next backfill")
+                .register(meterRegistry);
+    }
+
+    public void record(Activity activity) {
+        recordAll(List.of(activity));
+    }
+
+    // One $inc upsert per touched bucket, so concurrent writers never lose updates. Rollup failures
+    // are logged and counted rather than failing the already-saved activities.
+    public void recordAll(Collection<Activity> activities) {
+        Collection<ActivityRollup> rollups = accumulate(activities.stream());
+        if (rollups.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+        for (ActivityRollup rollup : rollups) {
+            Update update = new Update()
+                    .inc("count", rollup.getCount())
+                    .inc("totalDuration", rollup.getTotalDuration())
+                    .inc("totalCalories", rollup.getTotalCalories())
+                    .setOnInsert("userId", rollup.getUserId())
+                    .setOnInsert("period", rollup.getPeriod())
+                    .setOnInsert("periodStart", rollup.getPeriodStart())
+                    .setOnInsert("type", rollup.getType());
+            bulk.upsert(Query.query(Criteria.where("_id").is(rollup.getId())), update);
+        }
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            failedUpdates.increment(activities.size());
+            log.warn("Failed to update rollups for {} activities: {}", activities.size(), e.getMessage());
+        }
+    }
+
+    public ActivityStatsResponse getStats(String userId, RollupPeriod period, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = period.start(from != null ? from : defaultFrom(period, end));
+        if (start.isAfter(end)) {
+            throw new RuntimeException("Stats range starts after it ends: " + start + " > " + end);
+        }
+        long periods = periodsBetween(period, start, end);
+        if (periods > maxPeriods) {
+            throw new RuntimeException("Stats range of " + periods + " periods exceeds the limit of " + maxPeriods);
+        }
+
+        List<ActivityRollup> rollups = findRollups(userId, period, start, end);
+        List<ActivityRollup> days = period == RollupPeriod.DAY ? rollups : findRollups(userId, RollupPeriod.DAY, start, end);
+
+        Map<ActivityType, ActivityStatsBucket> totals = new EnumMap<>(ActivityType.class);
+        List<ActivityStatsBucket> buckets = new ArrayList<>(rollups.size());
+        for (ActivityRollup rollup : rollups) {
+            buckets.add(new ActivityStatsBucket(rollup.getPeriodStart(), rollup.getType(), rollup.getCount(),
+                    rollup.getTotalDuration(), rollup.getTotalCalories()));
+            ActivityStatsBucket total = totals.computeIfAbsent(rollup.getType(),
+                    type -> new ActivityStatsBucket(null, type, 0, 0, 0));
+            total.setCount(total.getCount() + rollup.getCount());
+            total.setTotalDuration(total.getTotalDuration() + rollup.getTotalDuration());
+            total.setTotalCalories(total.getTotalCalories() + rollup.getTotalCalories());
+        }
+
+        ActivityStatsResponse response = new ActivityStatsResponse();
+        response.setUserId(userId);
+        response.setPeriod(period);
+        response.setFrom(start);
+        response.setTo(end);
+        response.setBuckets(buckets);
+        response.setTotals(new ArrayList<>(totals.values()));
+        setStreaks(response, days, end);
+        return response;
+    }
+
+    // Recomputes every user's rollups from the activities collection, a chunk of users per task.
+    // Buckets are replaced one document at a time, so stats never read a missing bucket while a chunk
+    // is rebuilt. An activity tracked between a chunk's read and its replace can still be left out of
+    // its buckets until the next backfill, so run it when the write load is low.
+    public RollupBackfillResult backfill() {
+        long started = System.currentTimeMillis();
+        List<String> userIds = mongoTemplate.findDistinct(new Query(), "userId", Activity.class, String.class);
+        AtomicLong activityCount = new AtomicLong();
+        AtomicLong rollupCount = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, backfillParallelism));
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int i = 0; i < userIds.size(); i += backfillChunkSize) {
+                List<String> chunk = userIds.subList(i, Math.min(i + backfillChunkSize, userIds.size()));
+                chunks.add(executor.submit(() -> backfillChunk(chunk, activityCount, rollupCount)));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Rollup backfill interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Rollup backfill failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        RollupBackfillResult result = new RollupBackfillResult(userIds.size(), activityCount.get(), rollupCount.get(),
+                System.currentTimeMillis() - started);
+        log.info("Rollup backfill finished: {} users, {} activities, {} rollups in {} ms",
+                result.getUsers(), result.getActivities(), result.getRollups(), result.getDurationMillis());
+        return result;
+    }
+
+    private void backfillChunk(List<String> userIds, AtomicLong activityCount, AtomicLong rollupCount) {
+        // Read before the activities, so buckets that concurrent writes create meanwhile aren't taken as stale
+        Query existingQuery = Query.query(Criteria.where("userId").in(userIds));
+        existingQuery.fields().include("_id");
+        Set<String> stale = new HashSet<>();
+        mongoTemplate.find(existingQuery, ActivityRollup.class).forEach(rollup -> stale.add(rollup.getId()));
+
+        Query query = Query.query(Criteria.where("userId").in(userIds));
+        query.fields().include("userId", "type", "duration", "caloriesBurned", "startTime", "createdAt");
+
+        Collection<ActivityRollup> rollups;
+        try (Stream<Activity> activities = mongoTemplate.stream(query, Activity.class)) {
+            rollups = accumulate(activities.peek(activity -> activityCount.incrementAndGet()));
+        }
+
+        // Replace each recomputed bucket in place instead of removing the chunk's buckets and inserting
+        // them again, which raced with the $inc upserts of activities tracked in between
+        if (!rollups.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+            for (ActivityRollup rollup : rollups) {
+                bulk.replaceOne(Query.query(Criteria.where("_id").is(rollup.getId())), rollup,
+                        FindAndReplaceOptions.options().upsert());
+                stale.remove(rollup.getId());
+            }
+            bulk.execute();
+        }
+        // Buckets no activity maps to any more, e.g. after deletions
+        if (!stale.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(stale)), ActivityRollup.class);
+        }
+        rollupCount.addAndGet(rollups.size());
+    }
+
+    // Shared by incremental updates and the backfill so both bucket activities identically
+    private Collection<ActivityRollup> accumulate(Stream<Activity> activities) {
+        Map<String, ActivityRollup> rollups = new LinkedHashMap<>();
+        activities.forEach(activity -> {
+            if (activity.getUserId() == null || activity.getType() == null) {
+                return;
+            }
+            LocalDate date = activityDate(activity);
+            for (RollupPeriod period : RollupPeriod.values()) {
+                LocalDate periodStart = period.start(date);
+                String id = ActivityRollup.idFor(activity.getUserId(), period, periodStart, activity.getType());
+                ActivityRollup rollup = rollups.computeIfAbsent(id, key -> ActivityRollup.builder()
+                        .id(key)
+                        .userId(activity.getUserId())
+                        .period(period)
+                        .periodStart(periodStart)
+                        .type(activity.getType())
+                        .build());
+                rollup.setCount(rollup.getCount() + 1);
+                rollup.setTotalDuration(rollup.getTotalDuration() + valueOf(activity.getDuration()));
+                rollup.setTotalCalories(rollup.getTotalCalories() + valueOf(activity.getCaloriesBurned()));
+            }
+        });
+        return rollups.values();
+    }
+
+    private List<ActivityRollup> findRollups(String userId, RollupPeriod period, LocalDate start, LocalDate end) {
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                        .and("period").is(period)
+                        .and("periodStart").gte(start).lte(end))
+                .with(Sort.by(Sort.Order.asc("periodStart"), Sort.Order.asc("type")));
+        return mongoTemplate.find(query, ActivityRollup.class);
+    }
+
+    private static void setStreaks(ActivityStatsResponse response, List<ActivityRollup> days, LocalDate end) {
+        TreeSet<LocalDate> activeDays = new TreeSet<>();
+        days.forEach(day -> activeDays.add(day.getPeriodStart()));
+
+        int longest = 0;
+        int run = 0;
+        LocalDate previous = null;
+        for (LocalDate day : activeDays) {
+            run = previous != null && previous.plusDays(1).equals(day) ? run + 1 : 1;
+            longest = Math.max(longest, run);
+            previous = day;
+        }
+
+        int current = 0;
+        for (LocalDate day = end; activeDays.contains(day); day = day.minusDays(1)) {
+            current++;
+        }
+        response.setLongestStreakDays(longest);
+        response.setCurrentStreakDays(current);
+    }
+
+    private static LocalDate activityDate(Activity activity) {
+        LocalDateTime time = activity.getStartTime() != null ? activity.getStartTime() : activity.getCreatedAt();
+        return time != null ? time.toLocalDate() : LocalDate.now();
+    }
+
+    private static LocalDate defaultFrom(RollupPeriod period, LocalDate end) {
+        return switch (period) {
+            case DAY -> end.minusDays(29);
+            case WEEK -> end.minusWeeks(11);
+            case MONTH -> end.minusMonths(11);
+        };
+    }
+
+    private static long periodsBetween(RollupPeriod period, LocalDate start, LocalDate end) {
+        return switch (period) {
+            case DAY -> ChronoUnit.DAYS.between(start, end) + 1;
+            case WEEK -> ChronoUnit.WEEKS.between(start, period.start(end)) + 1;
+            case MONTH -> ChronoUnit.MONTHS.between(start, period.start(end)) + 1;
+        };
+    }
+
+    private static long valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -1,136 +1,258 @@
 package com.fitness.activityservice.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fitness.activityservice.ActivityRepository;
+import com.fitness.activityservice.dto.ActivityBatchItemResult;
+import com.fitness.activityservice.dto.ActivityBatchRequest;
+import com.fitness.activityservice.dto.ActivityBatchResponse;
+import com.fitness.activityservice.dto.ActivityPageResponse;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
 import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.RollupPeriod;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ActivityService {
 
-    @Value("${rabbitmq.exchange.name}")
-    private String exchange;
+    @Value("${activity.batch.max-size:500}")
+    private int maxBatchSize;
 
-    @Value("${rabbitmq.routing.name}")  // Changed to match your YAML
-    private String routingKey;
+    @Value("${activity.page.max-size:200}")
+    private int maxPageSize;
 
     private final ActivityRepository activityRepository;
     private final UserValidationService userValidationService;
-    private final RabbitTemplate rabbitTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final ActivityRollupService activityRollupService;
+    private final SampleSeriesCodec sampleSeriesCodec;
+    private final TraceContextPropagation traceContextPropagation;
+    private final MeterRegistry meterRegistry;
 
-    public ActivityResponse trackActivity(ActivityRequest request){
-
-        log.error("🔥🔥🔥 ACTIVITY SERVICE - trackActivity METHOD CALLED 🔥🔥🔥");
-        log.error("🔥🔥🔥 USER ID: {} 🔥🔥🔥", request.getUserId());
-
-        // Add explicit null check
-        if (userValidationService == null) {
-            log.error("🔥🔥🔥 USER VALIDATION SERVICE IS NULL! 🔥🔥🔥");
-            throw new RuntimeException("UserValidationService is null!");
-        }
-
-        log.error("🔥🔥🔥 CALLING validateUser... 🔥🔥🔥");
+    @Value("${activity.diagnostics.sample-rate:0.01}")
+    private double diagnosticsSampleRate;
 
-        // Enhanced logging before validation call
-        log.error("🔍🔍🔍 VALIDATION ATTEMPT - User ID Format Check: {} 🔍🔍🔍", request.getUserId());
-        log.error("🔍🔍🔍 User ID Length: {} 🔍🔍🔍", request.getUserId() != null ? request.getUserId().length() : "NULL");
-        log.error("🔍🔍🔍 User ID is UUID format: {} 🔍🔍🔍", isValidUUID(request.getUserId()));
+    private Timer validationTimer;
+    private Timer persistenceTimer;
+    private Timer rollupTimer;
+    private Counter invalidUsers;
+    private Counter validationErrors;
 
-        boolean isValidUser;
-        try {
-            log.error("🔍🔍🔍 ATTEMPTING USER VALIDATION CALL... 🔍🔍🔍");
-            isValidUser = userValidationService.validateUser(request.getUserId());
-            log.error("🔍🔍🔍 USER VALIDATION CALL COMPLETED SUCCESSFULLY 🔍🔍🔍");
-            log.error("🔥🔥🔥 validateUser RETURNED: {} 🔥🔥🔥", isValidUser);
-        } catch (Exception e) {
-            log.error("🚨🚨🚨 EXCEPTION DURING USER VALIDATION! 🚨🚨🚨");
-            log.error("🚨🚨🚨 Exception Type: {} 🚨🚨🚨", e.getClass().getSimpleName());
-            log.error("🚨🚨🚨 Exception Message: {} 🚨🚨🚨", e.getMessage());
-            log.error("🚨🚨🚨 Root Cause: {} 🚨🚨🚨", e.getCause() != null ? e.getCause().getMessage() : "No root cause");
-
-            // Check if it's a connection-related exception
-            if (isConnectionException(e)) {
-                log.error("🌐🌐🌐 CONNECTION ISSUE DETECTED! 🌐🌐🌐");
-                log.error("🌐🌐🌐 This appears to be a connectivity problem with user service 🌐🌐🌐");
-            } else {
-                log.error("❓❓❓ NON-CONNECTION EXCEPTION - Check user service logic ❓❓❓");
-            }
+    @PostConstruct
+    void registerMetrics() {
+        validationTimer = stageTimer("validation");
+        persistenceTimer = stageTimer("persistence");
+        rollupTimer = stageTimer("rollup");
+        invalidUsers = Counter.builder("activity.track.rejected")
+                .description("Activities rejected because the user doesn't exist")
+                .tag("reason", "invalid_user")
+                .register(meterRegistry);
+        validationErrors = Counter.builder("activity.track.rejected")
+                .description("Activities rejected because the user couldn't be validated")
+                .tag("reason", "validation_error")
+                .register(meterRegistry);
+    }
 
-            throw new RuntimeException("User validation failed due to service error: " + e.getMessage(), e);
-        }
+    private Timer stageTimer(String stage) {
+        return Timer.builder("activity.track.stage")
+                .description("Time spent in each stage of tracking an activity")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        if(!isValidUser){
-            log.error("🔥🔥🔥 USER VALIDATION FAILED! 🔥🔥🔥");
-            log.error("📋📋📋 VALIDATION FAILURE ANALYSIS: 📋📋📋");
-            log.error("📋📋📋 - User ID: {} 📋📋📋", request.getUserId());
-            log.error("📋📋📋 - User ID Format Valid: {} 📋📋📋", isValidUUID(request.getUserId()));
-            log.error("📋📋📋 - No exceptions thrown (connection seems OK) 📋📋📋");
-            log.error("📋📋📋 - User likely doesn't exist in database 📋📋📋");
-            log.error("🔥🔥🔥 THROWING RUNTIME EXCEPTION! 🔥🔥🔥");
-            throw new RuntimeException("Invalid User: " + request.getUserId());
+    public ActivityResponse trackActivity(ActivityRequest request){
+        boolean diagnostics = sampleDiagnostics();
+        if (diagnostics) {
+            log.trace("Tracking activity for user {}: type={}, duration={}, metrics={}", request.getUserId(),
+                    request.getType(), request.getDuration(),
+                    request.getAdditionalMetrics() != null ? request.getAdditionalMetrics().keySet() : null);
         }
 
-        log.error("🔥🔥🔥 VALIDATION PASSED - CREATING ACTIVITY 🔥🔥🔥");
+        validateUser(request.getUserId());
 
+        SampleSeriesCodec.Compacted metrics = sampleSeriesCodec.compact(request.getAdditionalMetrics());
         Activity activity = Activity.builder()
                 .userId(request.getUserId())
                 .type(request.getType())
                 .duration(request.getDuration())
                 .caloriesBurned(request.getCaloriesBurned())
                 .startTime(request.getStartTime())
-                .additionalMatrices(request.getAdditionalMetrics())
+                .additionalMatrices(metrics.metrics())
+                .sampleSeries(metrics.series())
+                .eventPending(true)  // Published to rabbitmq by ActivityOutboxRelay
+                .traceContext(traceContextPropagation.capture())
                 .build();
 
-        Activity savedActivity = activityRepository.save(activity);
-        log.error("🔥🔥🔥 ACTIVITY SAVED WITH ID: {} 🔥🔥🔥", savedActivity.getId());
-
-        try{
-            rabbitTemplate.convertAndSend(exchange, routingKey,savedActivity);
-        } catch(Exception e){
-            log.error("Failed to publish the activity to rabbitmq");
+        Activity savedActivity = persistenceTimer.record(() -> activityRepository.save(activity));
+        rollupTimer.record(() -> activityRollupService.record(savedActivity));
+        if (diagnostics) {
+            log.trace("Saved activity {} for user {}", savedActivity.getId(), savedActivity.getUserId());
         }
 
         return mapToResponse(savedActivity);
     }
 
-    // Helper method to check if string is valid UUID format
-    private boolean isValidUUID(String uuid) {
-        if (uuid == null) return false;
+    // Rejects unknown users, and requests whose user couldn't be validated because userservice failed
+    private void validateUser(String userId) {
+        boolean isValidUser;
+        long validationStart = System.nanoTime();
         try {
-            java.util.UUID.fromString(uuid);
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
+            isValidUser = userValidationService.validateUser(userId);
+        } catch (Exception e) {
+            validationErrors.increment();
+            throw new RuntimeException("User validation failed due to service error: " + e.getMessage(), e);
+        } finally {
+            validationTimer.record(System.nanoTime() - validationStart, TimeUnit.NANOSECONDS);
+        }
+
+        if (!isValidUser) {
+            invalidUsers.increment();
+            throw new RuntimeException("Invalid User: " + userId);
+        }
+    }
+
+    public ActivityBatchResponse trackActivities(ActivityBatchRequest request) {
+        List<ActivityRequest> items = request.getActivities() != null ? request.getActivities() : List.of();
+        if (items.isEmpty()) {
+            throw new RuntimeException("Activity batch is empty");
+        }
+        if (items.size() > maxBatchSize) {
+            throw new RuntimeException("Activity batch of " + items.size() + " exceeds the limit of " + maxBatchSize);
+        }
+
+        // One validation for the whole batch
+        validateUser(request.getUserId());
+
+        ActivityBatchItemResult[] results = new ActivityBatchItemResult[items.size()];
+        List<Activity> pending = new ArrayList<>(items.size());
+        List<Integer> pendingIndexes = new ArrayList<>(items.size());
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, String> traceContext = traceContextPropagation.capture();
+
+        for (int i = 0; i < items.size(); i++) {
+            ActivityRequest item = items.get(i);
+            String error = validateBatchItem(request.getUserId(), item);
+            if (error != null) {
+                results[i] = ActivityBatchItemResult.failure(i, error);
+                continue;
+            }
+            // Ids are assigned up front so bulk write errors can be mapped back to request items.
+            // A preset id makes auditing treat the document as existing, so createdAt is set here.
+            SampleSeriesCodec.Compacted metrics = sampleSeriesCodec.compact(item.getAdditionalMetrics());
+            pending.add(Activity.builder()
+                    .id(new ObjectId().toHexString())
+                    .userId(request.getUserId())
+                    .type(item.getType())
+                    .duration(item.getDuration())
+                    .caloriesBurned(item.getCaloriesBurned())
+                    .startTime(item.getStartTime())
+                    .additionalMatrices(metrics.metrics())
+                    .sampleSeries(metrics.series())
+                    .createdAt(now)
+                    .eventPending(true)
+                    .traceContext(traceContext)
+                    .build());
+            pendingIndexes.add(i);
+        }
+
+        boolean[] writeFailed = new boolean[pending.size()];
+        if (!pending.isEmpty()) {
+            long persistenceStart = System.nanoTime();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Activity.class)
+                        .insert(pending)
+                        .execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError writeError : e.getErrors()) {
+                    int position = writeError.getIndex();
+                    writeFailed[position] = true;
+                    results[pendingIndexes.get(position)] =
+                            ActivityBatchItemResult.failure(pendingIndexes.get(position), writeError.getMessage());
+                }
+            } finally {
+                persistenceTimer.record(System.nanoTime() - persistenceStart, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        List<Activity> saved = new ArrayList<>(pending.size());
+        for (int position = 0; position < pending.size(); position++) {
+            if (writeFailed[position]) {
+                continue;
+            }
+            Activity activity = pending.get(position);
+            int index = pendingIndexes.get(position);
+            results[index] = ActivityBatchItemResult.success(index, mapToResponse(activity));
+            saved.add(activity);
         }
+        rollupTimer.record(() -> activityRollupService.recordAll(saved));
+
+        ActivityBatchResponse response = new ActivityBatchResponse();
+        response.setAccepted(saved.size());
+        response.setRejected(items.size() - saved.size());
+        response.setResults(Arrays.asList(results));
+        log.info("Tracked activity batch for user {}: {} accepted, {} rejected",
+                request.getUserId(), response.getAccepted(), response.getRejected());
+        return response;
     }
 
-    // Helper method to identify connection-related exceptions
-    private boolean isConnectionException(Exception e) {
-        String message = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
-        String className = e.getClass().getSimpleName().toLowerCase();
+    private String validateBatchItem(String userId, ActivityRequest item) {
+        if (item == null) {
+            return "Activity is missing";
+        }
+        if (item.getUserId() != null && !item.getUserId().equals(userId)) {
+            return "Activity user does not match batch user";
+        }
+        if (item.getType() == null) {
+            return "Activity type is required";
+        }
+        if (item.getDuration() == null) {
+            return "Activity duration is required";
+        }
+        return null;
+    }
 
-        return message.contains("connection") ||
-                message.contains("timeout") ||
-                message.contains("refused") ||
-                message.contains("unreachable") ||
-                message.contains("network") ||
-                className.contains("connection") ||
-                className.contains("timeout") ||
-                className.contains("socket") ||
-                e.getCause() != null && isConnectionException(new RuntimeException(e.getCause()));
+    // Trace diagnostics for a sample of requests, so enabling TRACE doesn't flood the logs under load
+    private boolean sampleDiagnostics() {
+        return log.isTraceEnabled() && ThreadLocalRandom.current().nextDouble() < diagnosticsSampleRate;
     }
 
-    private ActivityResponse mapToResponse(Activity activity){
+    ActivityResponse mapToResponse(Activity activity){
         ActivityResponse response = new ActivityResponse();
 
         response.setId(activity.getId());
@@ -139,12 +261,17 @@ public class ActivityService {
         response.setDuration(activity.getDuration());
         response.setCaloriesBurned(activity.getCaloriesBurned());
         response.setStartTime(activity.getStartTime());
-        response.setAdditionalMatrices(activity.getAdditionalMatrices());
+        response.setAdditionalMatrices(responseMetrics(activity));
         response.setCreatedAt(activity.getCreatedAt());
         response.setUpdatedAt(activity.getUpdatedAt());
         return response;
     }
 
+    // Compact series are exposed as lists that decode on first access, i.e. when serialized
+    private static Map<String, Object> responseMetrics(Activity activity) {
+        return SampleSeriesCodec.expand(activity.getAdditionalMatrices(), activity.getSampleSeries());
+    }
+
     public List<ActivityResponse> getUserActivities(String userId) {
         List<Activity> activities = activityRepository.findByUserId(userId);
         return  activities.stream()
@@ -152,6 +279,80 @@ public class ActivityService {
                 .collect(Collectors.toList());
     }
 
+    // Served from the pre-aggregated rollups, so the cost depends on the number of buckets only
+    public ActivityStatsResponse getUserStats(String userId, RollupPeriod period, LocalDate from, LocalDate to) {
+        return activityRollupService.getStats(userId, period, from, to);
+    }
+
+    public ActivityPageResponse getUserActivitiesPage(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        Query query = userActivitiesQuery(userId);
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(afterCursor(cursor));
+        }
+        // Fetch one extra document to know whether another page exists
+        query.limit(pageSize + 1);
+
+        List<Activity> activities = mongoTemplate.find(query, Activity.class);
+        String nextCursor = null;
+        if (activities.size() > pageSize) {
+            activities = activities.subList(0, pageSize);
+            nextCursor = encodeCursor(activities.get(pageSize - 1));
+        }
+        return new ActivityPageResponse(activities.stream().map(this::mapToResponse).toList(), nextCursor);
+    }
+
+    // Writes the user's activities as NDJSON straight off the Mongo cursor
+    public void streamUserActivities(String userId, OutputStream out) throws IOException {
+        try (Stream<Activity> activities = mongoTemplate.stream(userActivitiesQuery(userId), Activity.class)) {
+            Iterator<Activity> iterator = activities.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(mapToResponse(iterator.next())));
+                out.write('\n');
+            }
+        }
+    }
+
+    // Newest first, matching the user_start_time_idx compound index
+    private Query userActivitiesQuery(String userId) {
+        return Query.query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Order.desc("startTime"), Sort.Order.desc("id")));
+    }
+
+    private String encodeCursor(Activity last) {
+        String startTime = last.getStartTime() != null ? last.getStartTime().toString() : "";
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((startTime + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Criteria afterCursor(String cursor) {
+        String startTime;
+        String id;
+        LocalDateTime time;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            startTime = decoded.substring(0, separator);
+            id = decoded.substring(separator + 1);
+            time = startTime.isEmpty() ? null : LocalDateTime.parse(startTime);
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid activity cursor: " + cursor, e);
+        }
+
+        if (time == null) {
+            // Activities without a start time sort last, so only older ones of those remain
+            return new Criteria().andOperator(
+                    Criteria.where("startTime").is(null),
+                    Criteria.where("id").lt(id));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("startTime").lt(time),
+                Criteria.where("startTime").is(null),
+                new Criteria().andOperator(
+                        Criteria.where("startTime").is(time),
+                        Criteria.where("id").lt(id)));
+    }
+
     public ActivityResponse getActivityById(String activityId) {
         return activityRepository.findById(activityId)
                 .map(this:: mapToResponse)
@@ -1,5 +1,7 @@
 package com.fitness.activityservice.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -12,14 +14,17 @@ import java.util.Map;
 
 @RestControllerAdvice
 @Slf4j
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
+    private final MeterRegistry meterRegistry;
 
+    // Most of these are expected failures such as unknown users, so one line at WARN; the stack
+    // trace is only logged at DEBUG
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleAllExceptions(Exception e) {
-        log.error("💥💥💥 EXCEPTION HANDLER TRIGGERED 💥💥💥");
-        log.error("💥💥💥 Exception Type: {} 💥💥💥", e.getClass().getSimpleName());
-        log.error("💥💥💥 Exception Message: {} 💥💥💥", e.getMessage());
-        log.error("💥💥💥 Full Stack Trace: 💥💥💥", e);
+        meterRegistry.counter("activity.errors", "exception", e.getClass().getSimpleName()).increment();
+        log.warn("Request failed with {}: {}", e.getClass().getSimpleName(), e.getMessage());
+        log.debug("Request failure stack trace", e);
 
         Map<String, Object> errorResponse = new HashMap<>();
         errorResponse.put("timestamp", LocalDateTime.now());
@@ -30,4 +35,4 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.SampleSeries;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+// Moves long numeric arrays out of an activity's free-form metrics into compact SampleSeries.
+// Encoding is lossless: a series is only compacted when every value fits in max-decimals decimal
+// places and a long, anything else stays in the metrics map as it was.
+@Component
+public class SampleSeriesCodec {
+
+    @Value("${activity.metrics.compact.enabled:false}")
+    private boolean enabled;
+
+    // Shorter arrays aren't worth the indirection
+    @Value("${activity.metrics.compact.min-samples:32}")
+    private int minSamples;
+
+    @Value("${activity.metrics.compact.max-decimals:3}")
+    private int maxDecimals;
+
+    public record Compacted(Map<String, Object> metrics, Map<String, SampleSeries> series) {
+    }
+
+    public Compacted compact(Map<String, Object> metrics) {
+        if (!enabled || metrics == null || metrics.isEmpty()) {
+            return new Compacted(metrics, null);
+        }
+        Map<String, Object> remaining = new LinkedHashMap<>();
+        Map<String, SampleSeries> series = new LinkedHashMap<>();
+        metrics.forEach((name, value) -> {
+            SampleSeries encoded = value instanceof List<?> samples && samples.size() >= minSamples
+                    ? encode(samples, maxDecimals)
+                    : null;
+            if (encoded != null) {
+                series.put(name, encoded);
+            } else {
+                remaining.put(name, value);
+            }
+        });
+        return new Compacted(remaining, series.isEmpty() ? null : series);
+    }
+
+    // Returns null when the samples can't be represented exactly, including series that mix integers
+    // and floating-point numbers and numbers other than the primitive wrappers (BigInteger,
+    // BigDecimal...), which couldn't be decoded to the same types
+    static SampleSeries encode(List<?> samples, int maxDecimals) {
+        int decimals = 0;
+        boolean integral = false;
+        boolean floating = false;
+        for (Object sample : samples) {
+            if (!(sample instanceof Number number)) {
+                return null;
+            }
+            if (isIntegral(number)) {
+                integral = true;
+            } else if (number instanceof Double || number instanceof Float) {
+                floating = true;
+                BigDecimal exact;
+                try {
+                    exact = new BigDecimal(number.toString()).stripTrailingZeros();
+                } catch (NumberFormatException e) {
+                    return null;  // NaN or infinity
+                }
+                decimals = Math.max(decimals, Math.max(0, exact.scale()));
+                if (decimals > maxDecimals) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+
+        if (integral && floating) {
+            return null;
+        }
+
+        long multiplier = (long) Math.pow(10, decimals);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(samples.size() * 2);
+        long previous = 0;
+        for (Object sample : samples) {
+            long scaled;
+            try {
+                scaled = isIntegral((Number) sample)
+                        ? Math.multiplyExact(((Number) sample).longValue(), multiplier)
+                        : new BigDecimal(sample.toString()).movePointRight(decimals).longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+            writeVarint(out, zigzag(scaled - previous));
+            previous = scaled;
+        }
+        return SampleSeries.builder()
+                .encoding(SampleSeries.DELTA_VARINT)
+                .count(samples.size())
+                .decimals(decimals)
+                .floating(floating)
+                .data(out.toByteArray())
+                .build();
+    }
+
+    static long[] decodeScaled(SampleSeries series) {
+        long[] values = new long[series.getCount()];
+        byte[] data = series.getData();
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            long raw = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                raw |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (raw >>> 1) ^ -(raw & 1);
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    // Integer series decode to longs, floating-point ones to doubles equal to the values tracked
+    public static List<Number> lazyList(SampleSeries series) {
+        return new LazySampleList(series);
+    }
+
+    // The metrics as tracked: the remaining map with each compact series merged back in as a lazy list
+    public static Map<String, Object> expand(Map<String, Object> metrics, Map<String, SampleSeries> series) {
+        if (series == null || series.isEmpty()) {
+            return metrics;
+        }
+        Map<String, Object> expanded = metrics != null ? new LinkedHashMap<>(metrics) : new LinkedHashMap<>();
+        series.forEach((name, samples) -> expanded.put(name, lazyList(samples)));
+        return expanded;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // Decodes on first element access, so responses that are never serialized don't pay for it
+    private static final class LazySampleList extends AbstractList<Number> implements RandomAccess {
+        private final SampleSeries series;
+        private volatile Number[] values;
+
+        private LazySampleList(SampleSeries series) {
+            this.series = series;
+        }
+
+        @Override
+        public Number get(int index) {
+            return values()[index];
+        }
+
+        @Override
+        public int size() {
+            return series.getCount();
+        }
+
+        private Number[] values() {
+            Number[] decoded = values;
+            if (decoded == null) {
+                long[] scaled = decodeScaled(series);
+                decoded = new Number[scaled.length];
+                double divisor = Math.pow(10, series.getDecimals());
+                boolean floating = series.isFloating() || series.getDecimals() > 0;
+                for (int i = 0; i < scaled.length; i++) {
+                    decoded[i] = floating ? (Number) (scaled[i] / divisor) : (Number) scaled[i];
+                }
+                values = decoded;
+            }
+            return decoded;
+        }
+    }
+}
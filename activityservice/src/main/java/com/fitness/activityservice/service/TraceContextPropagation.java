@@ -0,0 +1,47 @@
+package com.fitness.activityservice.service;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Carries the trace of the tracking request across the outbox: the headers are stored with the
+// activity and restored by the relay, whose scheduler thread has no trace of its own
+@Component
+@RequiredArgsConstructor
+public class TraceContextPropagation {
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    // Propagation headers of the current span, or null outside a sampled trace
+    public Map<String, String> capture() {
+        Span span = tracer.currentSpan();
+        if (span == null || span.isNoop()) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        propagator.inject(span.context(), headers, Map::put);
+        return headers.isEmpty() ? null : headers;
+    }
+
+    // Runs the action in a span continuing the captured trace, or as is when nothing was captured
+    public void runWithin(Map<String, String> headers, String spanName, Runnable action) {
+        if (headers == null || headers.isEmpty()) {
+            action.run();
+            return;
+        }
+        Span span = propagator.extract(headers, Map::get).name(spanName).start();
+        try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+            action.run();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.fitness.activityservice.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// DataLoader-style coalescing of single-user lookups: ids requested within the window, or until
+// maxBatchSize ids are waiting, are answered by one bulk call. Concurrent lookups of the same id
+// share a future.
+class UserValidationBatcher {
+    private final Function<Set<String>, CompletableFuture<Map<String, Boolean>>> bulkLookup;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final DistributionSummary batchSizes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-validation-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Map<String, CompletableFuture<Boolean>> pending = new HashMap<>();
+
+    UserValidationBatcher(Function<Set<String>, CompletableFuture<Map<String, Boolean>>> bulkLookup,
+                          Duration window, int maxBatchSize, DistributionSummary batchSizes) {
+        this.bulkLookup = bulkLookup;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizes = batchSizes;
+    }
+
+    CompletableFuture<Boolean> load(String userId) {
+        CompletableFuture<Boolean> future;
+        Map<String, CompletableFuture<Boolean>> full = null;
+        synchronized (this) {
+            future = pending.get(userId);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(userId, future);
+            if (pending.size() == 1) {
+                Map<String, CompletableFuture<Boolean>> batch = pending;
+                scheduler.schedule(() -> flush(batch), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new HashMap<>();
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Called when the window of a batch ends; a no-op if the batch already went out because it filled up
+    private void flush(Map<String, CompletableFuture<Boolean>> batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+            pending = new HashMap<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Map<String, CompletableFuture<Boolean>> batch) {
+        batchSizes.record(batch.size());
+        CompletableFuture<Map<String, Boolean>> results;
+        try {
+            results = bulkLookup.apply(batch.keySet());
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((exists, error) -> batch.forEach((userId, future) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(Boolean.TRUE.equals(exists.get(userId)));
+            }
+        }));
+    }
+}
@@ -1,43 +1,136 @@
 package com.fitness.activityservice.service;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserValidationService {
+    private static final ParameterizedTypeReference<Map<String, Boolean>> USER_EXISTS = new ParameterizedTypeReference<>() {};
+
     private final WebClient userServiceWebClient;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user-validation.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${user-validation.cache.positive-ttl:10m}")
+    private Duration positiveTtl;
+
+    @Value("${user-validation.cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    @Value("${user-validation.cache.refresh-after:5m}")
+    private Duration refreshAfter;
+
+    @Value("${user-validation.batch.window:2ms}")
+    private Duration batchWindow;
+
+    @Value("${user-validation.batch.max-size:100}")
+    private int maxBatchSize;
+
+    // userId -> exists. Known users are refreshed in the background before they expire,
+    // unknown users only live for the short negative TTL so new registrations show up quickly.
+    // Async so that misses for different users wait on the batcher concurrently.
+    private AsyncLoadingCache<String, Boolean> validatedUsers;
+    private UserValidationBatcher batcher;
+
+    @PostConstruct
+    void initCache() {
+        batcher = new UserValidationBatcher(this::fetchUsersExist, batchWindow, maxBatchSize,
+                DistributionSummary.builder("user.validation.batch.size")
+                        .description("User ids per bulk validation call")
+                        .register(meterRegistry));
+        validatedUsers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(String userId, Boolean exists, long currentTime) {
+                        return ttlFor(exists);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userId, Boolean exists, long currentTime, long currentDuration) {
+                        return ttlFor(exists);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userId, Boolean exists, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .buildAsync((userId, executor) -> batcher.load(userId));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, validatedUsers, "userValidation");
+    }
 
+    @PreDestroy
+    void shutdown() {
+        batcher.shutdown();
+    }
+
+    // False only when userservice says the user doesn't exist. Failing to get an answer (userservice
+    // down, timeouts, 5xx) propagates, so callers don't report an outage as an unknown user.
     public boolean validateUser(String userId) {
-        log.info("Calling user validation API for userId : {}", userId);
+        if (userId == null || userId.isBlank()) {
+            return false;
+        }
         try {
-            Boolean result = userServiceWebClient.get()
-                    .uri("/api/users/{userId}/validate", userId)
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .block();
-
+            Boolean result = validatedUsers.get(userId).join();
             return result != null ? result : false;
-
-        } catch (WebClientResponseException e) {
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                log.warn("User not found: {}", userId);
-                return false;  // Return false instead of throwing exception
-            } else if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
-                log.warn("Invalid user ID: {}", userId);
-                return false;  // Return false instead of throwing exception
-            } else {
-                log.error("Error validating user: {}. Status: {}", userId, e.getStatusCode());
-                return false;  // Return false for other HTTP errors
-            }
-        } catch (Exception e) {
-            log.error("Unexpected error validating user: {}", userId, e);
-            return false;  // Return false for unexpected errors
+        } catch (CompletionException e) {
+            log.error("Error validating user: {}", userId, e.getCause());
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
         }
     }
-}
\ No newline at end of file
+
+    // Drop a cached answer, e.g. after the user is deleted or has just registered
+    public void invalidate(String userId) {
+        validatedUsers.synchronous().invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        validatedUsers.synchronous().invalidateAll();
+    }
+
+    // One POST /api/users/validate for a batch of ids. Only definitive answers complete the future
+    // (and are therefore cached); transient failures fail every lookup in the batch.
+    private CompletableFuture<Map<String, Boolean>> fetchUsersExist(Set<String> userIds) {
+        log.debug("Calling bulk user validation API for {} users", userIds.size());
+        return userServiceWebClient.post()
+                .uri("/api/users/validate")
+                .bodyValue(Map.of("userIds", userIds))
+                .retrieve()
+                .bodyToMono(USER_EXISTS)
+                .defaultIfEmpty(Map.of())
+                .doOnError(WebClientResponseException.class, e ->
+                        log.error("Error validating {} users. Status: {}", userIds.size(), e.getStatusCode()))
+                .toFuture();
+    }
+
+    private long ttlFor(Boolean exists) {
+        return Boolean.TRUE.equals(exists) ? positiveTtl.toNanos() : negativeTtl.toNanos();
+    }
+}
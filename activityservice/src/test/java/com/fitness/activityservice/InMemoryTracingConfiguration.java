@@ -0,0 +1,17 @@
+package com.fitness.activityservice;
+
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+// Collects finished spans in memory so tests can assert on traces without a collector. Spans are
+// exported in batches, flush the SdkTracerProvider before reading them.
+@TestConfiguration(proxyBeanMethods = false)
+public class InMemoryTracingConfiguration {
+
+	@Bean
+	InMemorySpanExporter inMemorySpanExporter() {
+		return InMemorySpanExporter.create();
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.InMemoryTracingConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Tracer;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.observation.ObservationAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.observation.web.client.HttpClientObservationsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.opentelemetry.OpenTelemetryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.MicrometerTracingAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.OpenTelemetryTracingAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.reactor.ReactorAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The activity service -> userservice hop: a call made with the WebClient builder from WebClientConfig
+// sends traceparent for the caller's trace and records its client span in that trace
+@SpringBootTest(classes = {WebClientConfig.class, HttpClientPools.class},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.cloud.config.enabled=false",
+                "spring.reactor.context-propagation=auto",
+                "management.tracing.sampling.probability=1.0"
+        })
+@ImportAutoConfiguration({
+        ObservationAutoConfiguration.class,
+        MetricsAutoConfiguration.class,
+        CompositeMeterRegistryAutoConfiguration.class,
+        SimpleMetricsExportAutoConfiguration.class,
+        OpenTelemetryAutoConfiguration.class,
+        OpenTelemetryTracingAutoConfiguration.class,
+        MicrometerTracingAutoConfiguration.class,
+        ReactorAutoConfiguration.class,
+        WebClientAutoConfiguration.class,
+        HttpClientObservationsAutoConfiguration.class
+})
+@Import(InMemoryTracingConfiguration.class)
+class WebClientTracePropagationTest {
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    private HttpServer userService;
+    private final AtomicReference<String> traceparent = new AtomicReference<>();
+
+    @BeforeEach
+    void startUserService() throws IOException {
+        userService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        userService.createContext("/", exchange -> {
+            traceparent.set(exchange.getRequestHeaders().getFirst("traceparent"));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        userService.start();
+    }
+
+    @AfterEach
+    void stopUserService() {
+        userService.stop(0);
+    }
+
+    @Test
+    void userServiceCallContinuesTheCallersTrace() {
+        String url = "http://localhost:" + userService.getAddress().getPort() + "/api/users/user-1/validate";
+        String traceId;
+        Observation request = Observation.start("track activity", observationRegistry);
+        try (Observation.Scope scope = request.openScope()) {
+            traceId = tracer.currentSpan().context().traceId();
+            // Blocking, like the service's calls, so the trace has to reach the reactive pipeline
+            webClientBuilder.build().get().uri(url).retrieve().toBodilessEntity().block();
+        } finally {
+            request.stop();
+        }
+
+        assertNotNull(traceparent.get(), "no traceparent header sent");
+        assertEquals(traceId, traceparent.get().split("-")[1]);
+
+        tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+        assertTrue(spanExporter.getFinishedSpanItems().stream()
+                .anyMatch(span -> span.getKind() == SpanKind.CLIENT && span.getTraceId().equals(traceId)),
+                "no client span in trace " + traceId);
+    }
+}
@@ -0,0 +1,152 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.SampleSeries;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Round trips through SampleSeriesCodec, and the series it has to leave in the metrics map
+class SampleSeriesCodecTest {
+    private static final int MAX_DECIMALS = 3;
+
+    @Test
+    void integralSeriesRoundTripsAsLongs() {
+        List<Integer> heartRate = List.of(72, 75, 75, 71, 140, 180, 64);
+
+        SampleSeries series = SampleSeriesCodec.encode(heartRate, MAX_DECIMALS);
+
+        assertNotNull(series);
+        assertEquals(0, series.getDecimals());
+        assertEquals(List.of(72L, 75L, 75L, 71L, 140L, 180L, 64L), SampleSeriesCodec.lazyList(series));
+    }
+
+    @Test
+    void negativeAndExtremeLongsRoundTrip() {
+        // Deltas between the extremes overflow a long; they wrap on encode and wrap back on decode
+        List<Long> samples = List.of(-5L, 3L, -1_000_000L, Long.MIN_VALUE, Long.MAX_VALUE, 0L, Long.MIN_VALUE);
+
+        SampleSeries series = SampleSeriesCodec.encode(samples, MAX_DECIMALS);
+
+        assertNotNull(series);
+        assertEquals(samples, SampleSeriesCodec.lazyList(series));
+    }
+
+    @Test
+    void decimalSeriesRoundTripsAsEqualDoubles() {
+        List<Double> pace = List.of(5.25, 5.5, -3.125, 0.001, 4.0, 12.75);
+
+        SampleSeries series = SampleSeriesCodec.encode(pace, MAX_DECIMALS);
+
+        assertNotNull(series);
+        assertEquals(3, series.getDecimals());
+        assertEquals(pace, SampleSeriesCodec.lazyList(series));
+    }
+
+    @Test
+    void wholeDoublesStayDoubles() {
+        List<Double> cadence = List.of(80.0, 82.0, 81.0);
+
+        SampleSeries series = SampleSeriesCodec.encode(cadence, MAX_DECIMALS);
+
+        assertNotNull(series);
+        assertEquals(0, series.getDecimals());
+        assertTrue(series.isFloating());
+        assertEquals(cadence, SampleSeriesCodec.lazyList(series));
+        assertInstanceOf(Double.class, SampleSeriesCodec.lazyList(series).get(0));
+    }
+
+    @Test
+    void rejectsSeriesThatCantRoundTrip() {
+        assertNull(SampleSeriesCodec.encode(List.of(1, 2.5, 3), MAX_DECIMALS), "mixed integers and doubles");
+        assertNull(SampleSeriesCodec.encode(List.of(1, "2", 3), MAX_DECIMALS), "non-numeric sample");
+        assertNull(SampleSeriesCodec.encode(Arrays.asList(1, null, 3), MAX_DECIMALS), "null sample");
+        assertNull(SampleSeriesCodec.encode(List.of(1.0, 2.0001), MAX_DECIMALS), "too many decimals");
+        assertNull(SampleSeriesCodec.encode(List.of(1.0, Double.NaN), MAX_DECIMALS), "NaN");
+        assertNull(SampleSeriesCodec.encode(List.of(1.0, Double.POSITIVE_INFINITY), MAX_DECIMALS), "infinity");
+        assertNull(SampleSeriesCodec.encode(List.of(BigInteger.ONE, BigInteger.TWO), MAX_DECIMALS), "BigInteger");
+        assertNull(SampleSeriesCodec.encode(List.of(new BigDecimal("1.5")), MAX_DECIMALS), "BigDecimal");
+    }
+
+    @Test
+    void rejectsValuesThatOverflowALongOnceScaled() {
+        assertNull(SampleSeriesCodec.encode(List.of(1.0, 1.0E19), MAX_DECIMALS));
+        assertNull(SampleSeriesCodec.encode(List.of(0.5, 9.3E17), MAX_DECIMALS));
+    }
+
+    @Test
+    void compactKeepsSeriesThatCantRoundTripInTheMap() {
+        SampleSeriesCodec codec = codec(4);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("heartRate", List.of(70, 72, 74, 76, 78));
+        metrics.put("mixed", List.of(1, 2.5, 3, 4, 5));
+        metrics.put("laps", List.of("a", "b", "c", "d", "e"));
+        metrics.put("short", List.of(1, 2, 3));
+        metrics.put("avgHeartRate", 74);
+
+        SampleSeriesCodec.Compacted compacted = codec.compact(metrics);
+
+        assertEquals(List.of("heartRate"), new ArrayList<>(compacted.series().keySet()));
+        assertEquals(List.of("mixed", "laps", "short", "avgHeartRate"), new ArrayList<>(compacted.metrics().keySet()));
+        assertSame(metrics.get("mixed"), compacted.metrics().get("mixed"));
+        assertEquals(Map.of(
+                        "heartRate", List.of(70L, 72L, 74L, 76L, 78L),
+                        "mixed", metrics.get("mixed"),
+                        "laps", metrics.get("laps"),
+                        "short", metrics.get("short"),
+                        "avgHeartRate", 74),
+                SampleSeriesCodec.expand(compacted.metrics(), compacted.series()));
+    }
+
+    @Test
+    void compactLeavesMetricsAloneWhenDisabled() {
+        SampleSeriesCodec codec = codec(1);
+        ReflectionTestUtils.setField(codec, "enabled", false);
+        Map<String, Object> metrics = Map.of("heartRate", List.of(70, 72));
+
+        SampleSeriesCodec.Compacted compacted = codec.compact(metrics);
+
+        assertSame(metrics, compacted.metrics());
+        assertNull(compacted.series());
+    }
+
+    @Test
+    void lazyListDecodesOnFirstAccess() {
+        SampleSeries series = SampleSeriesCodec.encode(List.of(1, 2, 3), MAX_DECIMALS);
+        assertNotNull(series);
+        byte[] data = series.getData();
+        series.setData(new byte[0]);
+
+        // Size comes from the series; nothing is decoded until an element is read
+        List<Number> samples = SampleSeriesCodec.lazyList(series);
+        assertEquals(3, samples.size());
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> samples.get(0));
+
+        series.setData(data);
+        List<Number> decoded = SampleSeriesCodec.lazyList(series);
+        assertEquals(2L, decoded.get(1));
+        assertEquals(List.of(1L, 2L, 3L), decoded);
+    }
+
+    private static SampleSeriesCodec codec(int minSamples) {
+        SampleSeriesCodec codec = new SampleSeriesCodec();
+        ReflectionTestUtils.setField(codec, "enabled", true);
+        ReflectionTestUtils.setField(codec, "minSamples", minSamples);
+        ReflectionTestUtils.setField(codec, "maxDecimals", MAX_DECIMALS);
+        return codec;
+    }
+}
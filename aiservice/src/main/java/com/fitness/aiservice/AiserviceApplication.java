@@ -3,9 +3,11 @@ package com.fitness.aiservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoRepositories(basePackages = "com.fitness.aiservice.repository")
+@EnableScheduling
 public class AiserviceApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(AiserviceApplication.class, args);
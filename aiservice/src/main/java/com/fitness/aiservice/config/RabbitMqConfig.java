@@ -4,12 +4,18 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class RabbitMqConfig {
 
@@ -22,9 +28,42 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.name}")  // Changed to match your YAML
     private String routingKey;
 
+    // Messages the ai-service listener gave up on after its retries
+    @Value("${rabbitmq.dead-letter.exchange:fitness.exchange.dlx}")
+    private String deadLetterExchange;
+
+    @Value("${rabbitmq.dead-letter.queue:activity.queue.dlq}")
+    private String deadLetterQueue;
+
+    @Value("${gemini.batch.size:10}")
+    private int batchSize;
+
+    @Value("${gemini.batch.max-wait:500ms}")
+    private Duration batchMaxWait;
+
+    // Declared with the same arguments by the activity service; a broker queue declared without them
+    // has to be deleted once so it can be redeclared
     @Bean
     public Queue activityQueue(){
-        return new Queue(queue, true);
+        return QueueBuilder.durable(queue)
+                .deadLetterExchange(deadLetterExchange)
+                .deadLetterRoutingKey(routingKey)
+                .build();
+    }
+
+    @Bean
+    public DirectExchange activityDeadLetterExchange() {
+        return new DirectExchange(deadLetterExchange);
+    }
+
+    @Bean
+    public Queue activityDeadLetterQueue() {
+        return QueueBuilder.durable(deadLetterQueue).build();
+    }
+
+    @Bean
+    public Binding activityDeadLetterBinding(Queue activityDeadLetterQueue, DirectExchange activityDeadLetterExchange) {
+        return BindingBuilder.bind(activityDeadLetterQueue).to(activityDeadLetterExchange).with(routingKey);
     }
 
     @Bean
@@ -42,5 +81,19 @@ public class RabbitMqConfig {
         return new Jackson2JsonMessageConverter();
     }
 
+    // Delivers up to batchSize activities at once, or whatever arrived once no message shows up within batchMaxWait
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(batchMaxWait.toMillis());
+        return factory;
+    }
+
 }
 
@@ -1,30 +1,67 @@
 package com.fitness.aiservice.controller;
 
-import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.service.RecommendationPushHub;
 import com.fitness.aiservice.service.RecommendationService;
+import com.fitness.aiservice.service.RecommendationService.CachedBody;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
-
+// Bodies are served pre-serialized with an ETag and Last-Modified; Spring answers matching
+// conditional requests with 304 without writing the body
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/recommendations")
 public class RecommendationController {
     private final RecommendationService recommendationService;
+    private final RecommendationPushHub recommendationPushHub;
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Recommendation>> getUserRecommendation(@PathVariable String userId){
-        return ResponseEntity.ok(recommendationService.getUserRecommendation(userId));
+    public ResponseEntity<byte[]> getUserRecommendation(@PathVariable String userId){
+        return toResponse(recommendationService.getUserRecommendationBody(userId));
     }
 
     @GetMapping("/activity/{activityId}")
-    public ResponseEntity<Recommendation> getActivityRecommendation(@PathVariable String activityId){
-        return ResponseEntity.ok(recommendationService.getActivityRecommendation(activityId));
+    public ResponseEntity<byte[]> getActivityRecommendation(@PathVariable String activityId, WebRequest webRequest){
+        // Recommendations are immutable, so a client holding this ETag is revalidated without a lookup.
+        // checkNotModified matches If-None-Match as RFC 9110 does (weak tags, lists, *) and has
+        // already written the 304 and its ETag when it returns true.
+        if (webRequest.checkNotModified(recommendationService.activityETag(activityId))) {
+            return null;
+        }
+        return toResponse(recommendationService.getActivityRecommendationBody(activityId));
+    }
+
+    // Pushes each recommendation saved for the user from now on. With activityId, a recommendation that
+    // already exists for that activity is sent straight away so subscribing late doesn't miss it.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRecommendations(@RequestHeader("X-User-ID") String userId,
+                                            @RequestParam(required = false) String activityId){
+        SseEmitter emitter = recommendationPushHub.subscribe(userId);
+        if (activityId != null) {
+            recommendationService.findActivityRecommendation(activityId)
+                    .filter(recommendation -> userId.equals(recommendation.getUserId()))
+                    .ifPresent(recommendation -> recommendationPushHub.send(userId, emitter, recommendation));
+        }
+        return emitter;
+    }
+
+    private ResponseEntity<byte[]> toResponse(CachedBody cached) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(cached.eTag());
+        if (cached.lastModified() != null) {
+            response.lastModified(cached.lastModified());
+        }
+        return response.body(cached.body());
     }
 
 }
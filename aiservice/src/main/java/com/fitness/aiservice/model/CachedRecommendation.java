@@ -0,0 +1,41 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Activity-independent part of a recommendation, keyed by the fingerprint of the prompt inputs
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "recommendation_cache")
+public class CachedRecommendation {
+
+    @Id
+    private String fingerprint;
+
+    @Field("recommendation")
+    private String recommendation;
+
+    @Field("improvements")
+    private List<String> improvements;
+
+    @Field("suggestions")
+    private List<String> suggestions;
+
+    @Field("safety")
+    private List<String> safety;
+
+    @Field("created_at")
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,35 @@
+package com.fitness.aiservice.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+// The JSON document the prompt asks Gemini to answer with; activityId is only set in batched answers
+@Data
+public class GeminiAnalysis {
+    private String activityId;
+    private Analysis analysis;
+    private List<Improvement> improvements;
+    private List<Suggestion> suggestions;
+    private List<String> safety;
+
+    @Data
+    public static class Analysis {
+        private String overall;
+        private String pace;
+        private String heartRate;
+        private String caloriesBurned;
+    }
+
+    @Data
+    public static class Improvement {
+        private String area;
+        private String recommendation;
+    }
+
+    @Data
+    public static class Suggestion {
+        private String workout;
+        private String description;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -22,7 +23,9 @@ public class Recommendation {
     @Id
     private String id;
 
+    // One recommendation per activity; see RecommendationUpsertRepository
     @Field("activity_id")
+    @Indexed(unique = true)
     private String activityId;
 
     @Field("user_id")
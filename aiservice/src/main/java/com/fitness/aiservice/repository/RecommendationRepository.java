@@ -4,6 +4,7 @@ import com.fitness.aiservice.model.Recommendation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;  // Add this import
 
@@ -12,4 +13,6 @@ public interface RecommendationRepository extends MongoRepository<Recommendation
     List<Recommendation> findByUserId(String userId);
 
     Optional<Recommendation> findByActivityId(String activityId);
+
+    List<Recommendation> findByActivityIdIn(Collection<String> activityIds);
 }
\ No newline at end of file
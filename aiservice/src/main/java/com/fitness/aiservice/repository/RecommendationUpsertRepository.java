@@ -0,0 +1,41 @@
+package com.fitness.aiservice.repository;
+
+import com.fitness.aiservice.model.Recommendation;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+// Saves recommendations keyed on their activity. Activity events are delivered at least once, so a
+// redelivered or duplicated event must not add a second recommendation for the same activity: the
+// first one saved wins and is returned to every later writer. Relies on the unique activity_id index.
+@Repository
+@RequiredArgsConstructor
+public class RecommendationUpsertRepository {
+    private final MongoTemplate mongoTemplate;
+
+    public Recommendation insertIfAbsent(Recommendation recommendation) {
+        if (recommendation.getCreatedAt() == null) {
+            // Not an entity save, so auditing doesn't fill it in
+            recommendation.setCreatedAt(LocalDateTime.now());
+        }
+        Document document = new Document();
+        mongoTemplate.getConverter().write(recommendation, document);
+        document.remove("_id");
+        document.remove("_class");
+
+        Update update = new Update();
+        document.forEach(update::setOnInsert);
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("activityId").is(recommendation.getActivityId())),
+                update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Recommendation.class);
+    }
+}
@@ -1,27 +1,41 @@
 package com.fitness.aiservice.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.GeminiAnalysis;
 import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityAIService {
+    private static final String DEFAULT_ANALYSIS = "Unable to generate detailed analysis. Please try again later.";
+    private static final TypeReference<List<GeminiAnalysis>> BATCH_ANALYSES = new TypeReference<>() {};
+    private static final String CODE_FENCE = "```";
+
     private final GeminiService geminiService;
     private final ObjectMapper objectMapper;
+    private final RecommendationCache recommendationCache;
+    private final ObservationRegistry observationRegistry;
 
     // Reactive method that returns Recommendation object
     public Mono<Recommendation> generateRecommendation(Activity activity) {
@@ -29,19 +43,12 @@ public class ActivityAIService {
         log.info("Generated prompt for activity {}: {}", activity.getId(), prompt);
 
         return Mono.fromCallable(() -> {
-                    log.info("Starting AI recommendation generation for activity: {}", activity.getId());
-                    long startTime = System.currentTimeMillis();
-
-                    String response = geminiService.getAnswer(prompt);
-                    log.info("Received raw response from Gemini for activity {}", activity.getId());
-
-                    Recommendation recommendation = processAiResponse(activity, response);
-
-                    long endTime = System.currentTimeMillis();
-                    log.info("Total recommendation generation time for activity {}: {} ms",
-                            activity.getId(), (endTime - startTime));
-
-                    return recommendation;
+                    Observation observation = generationObservation(activity);
+                    return observation.observe(() -> {
+                        Recommendation recommendation = processAiResponse(activity, geminiService.getAnswer(prompt));
+                        observation.lowCardinalityKeyValue("outcome", outcomeOf(recommendation));
+                        return recommendation;
+                    });
                 })
                 .doOnSuccess(recommendation -> log.info("Successfully generated recommendation for activity {}: {}",
                         activity.getId(), recommendation.getRecommendation()))
@@ -51,21 +58,107 @@ public class ActivityAIService {
 
     // Synchronous method that returns Recommendation object
     public Recommendation generateRecommendationSync(Activity activity) {
+        Observation observation = generationObservation(activity);
+        return observation.observe(() -> generateRecommendationSync(activity, observation));
+    }
+
+    private Recommendation generateRecommendationSync(Activity activity, Observation observation) {
+        Optional<Recommendation> cached = recommendationCache.lookup(activity);
+        if (cached.isPresent()) {
+            log.info("Serving cached recommendation for activity {}", activity.getId());
+            observation.lowCardinalityKeyValue("outcome", "cached");
+            return cached.get();
+        }
+
         String prompt = createPromptForActivity(activity);
         log.info("Generated prompt for activity {}: {}", activity.getId(), prompt);
 
         try {
             String response = geminiService.getAnswer(prompt);
             Recommendation recommendation = processAiResponse(activity, response);
+            observation.lowCardinalityKeyValue("outcome", outcomeOf(recommendation));
+            cacheIfGenerated(activity, recommendation);
             log.info("Successfully generated recommendation for activity {}: {}",
                     activity.getId(), recommendation.getRecommendation());
             return recommendation;
         } catch (Exception e) {
             log.error("Error getting AI response for activity {}: {}", activity.getId(), e.getMessage());
+            observation.lowCardinalityKeyValue("outcome", "fallback");
             return createDefaultRecommendation(activity);
         }
     }
 
+    // Timed as recommendation.generate, tagged with whether the answer was cached, generated or a fallback
+    private Observation generationObservation(Activity activity) {
+        return Observation.createNotStarted("recommendation.generate", observationRegistry)
+                .contextualName("generate recommendation")
+                .lowCardinalityKeyValue("outcome", "unknown")
+                .highCardinalityKeyValue("activity.id", String.valueOf(activity.getId()));
+    }
+
+    private static String outcomeOf(Recommendation recommendation) {
+        return DEFAULT_ANALYSIS.equals(recommendation.getRecommendation()) ? "fallback" : "generated";
+    }
+
+    // Generates recommendations for several activities with a single Gemini call.
+    // Activities missing from the answer, or the whole batch on a parse failure, fall back to per-item calls.
+    public List<Recommendation> generateRecommendationsBatch(List<Activity> activities) {
+        Recommendation[] recommendations = new Recommendation[activities.size()];
+        List<Activity> uncached = new ArrayList<>(activities.size());
+        for (int i = 0; i < activities.size(); i++) {
+            Optional<Recommendation> cached = recommendationCache.lookup(activities.get(i));
+            if (cached.isPresent()) {
+                recommendations[i] = cached.get();
+            } else {
+                uncached.add(activities.get(i));
+            }
+        }
+
+        // A lone uncached activity goes through the regular single-activity prompt below
+        Map<String, GeminiAnalysis> analysesById = uncached.size() > 1 ? requestBatchAnalyses(uncached) : Map.of();
+
+        for (int i = 0; i < activities.size(); i++) {
+            if (recommendations[i] != null) {
+                continue;
+            }
+            Activity activity = activities.get(i);
+            GeminiAnalysis analysis = analysesById.get(activity.getId());
+            if (analysis != null) {
+                recommendations[i] = buildRecommendation(activity, analysis);
+                cacheIfGenerated(activity, recommendations[i]);
+            } else {
+                log.warn("No batched analysis for activity {}, falling back to a single request", activity.getId());
+                recommendations[i] = generateRecommendationSync(activity);
+            }
+        }
+        log.info("Generated {} recommendations from batch: {} from cache, {} answered in the batched call",
+                activities.size(), activities.size() - uncached.size(), analysesById.size());
+        return Arrays.asList(recommendations);
+    }
+
+    private Map<String, GeminiAnalysis> requestBatchAnalyses(List<Activity> activities) {
+        Map<String, GeminiAnalysis> analysesById = new HashMap<>();
+        try {
+            String response = geminiService.getAnswer(createPromptForActivities(activities));
+            List<GeminiAnalysis> results = objectMapper.readValue(extractResponseText(response), BATCH_ANALYSES);
+            for (GeminiAnalysis result : results) {
+                if (result != null && result.getActivityId() != null) {
+                    analysesById.put(result.getActivityId(), result);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting batched AI response for {} activities: {}", activities.size(), e.getMessage());
+        }
+        return analysesById;
+    }
+
+    // Fallback recommendations are not cached so equivalent activities get another chance at a real analysis
+    private void cacheIfGenerated(Activity activity, Recommendation recommendation) {
+        if (!DEFAULT_ANALYSIS.equals(recommendation.getRecommendation())) {
+            recommendationCache.store(activity, recommendation);
+        }
+    }
+
     // Method that returns structured JSON string (for API responses)
     public Mono<String> generateRecommendationJson(Activity activity) {
         return generateRecommendation(activity)
@@ -84,47 +177,13 @@ public class ActivityAIService {
         }
     }
 
-    private Recommendation processAiResponse(Activity activity, String aiResponse) {
+    Recommendation processAiResponse(Activity activity, String aiResponse) {
         try {
-            JsonNode rootNode = objectMapper.readTree(aiResponse);
-
-            JsonNode textNode = rootNode.path("candidates")
-                    .get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            String jsonContent = textNode.asText()
-                    .replaceAll("```json\\n", "")
-                    .replaceAll("\\n```", "")
-                    .trim();
+            String jsonContent = extractResponseText(aiResponse);
 
             log.info("PARSED RESPONSE FROM AI: {}", jsonContent);
 
-            JsonNode analysisJson = objectMapper.readTree(jsonContent);
-            JsonNode analysisNode = analysisJson.path("analysis");
-
-            StringBuilder fullAnalysis = new StringBuilder();
-            addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall: ");
-            addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace: ");
-            addAnalysisSection(fullAnalysis, analysisNode, "heartRate", "Heart Rate: ");
-            addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories: ");
-
-            List<String> improvements = extractImprovements(analysisJson.path("improvements"));
-            List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
-            List<String> safety = extractSafetyGuidelines(analysisJson.path("safety"));
-
-            return Recommendation.builder()
-                    .activityId(activity.getId())
-                    .userId(activity.getUserId())
-                    .activityType(activity.getType() != null ? activity.getType().toString() : "Unknown") // Fixed
-                    .recommendation(fullAnalysis.toString().trim())
-                    .improvements(improvements)
-                    .suggestions(suggestions)
-                    .safety(safety)
-                    .createdAt(LocalDateTime.now())
-                    .build();
+            return buildRecommendation(activity, objectMapper.readValue(jsonContent, GeminiAnalysis.class));
 
         } catch (Exception e) {
             log.error("Error processing AI response for activity {}: {}", activity.getId(), e.getMessage(), e);
@@ -132,12 +191,84 @@ public class ActivityAIService {
         }
     }
 
+    // Pulls the model's text out of the Gemini envelope and strips markdown code fences.
+    // Walks the token stream to candidates[0].content.parts[0].text instead of building a tree.
+    private String extractResponseText(String aiResponse) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(aiResponse)) {
+            boolean found = parser.nextToken() == JsonToken.START_OBJECT
+                    && moveToField(parser, "candidates") && enterFirstArrayObject(parser)
+                    && moveToField(parser, "content") && parser.nextToken() == JsonToken.START_OBJECT
+                    && moveToField(parser, "parts") && enterFirstArrayObject(parser)
+                    && moveToField(parser, "text") && parser.nextToken() == JsonToken.VALUE_STRING;
+            if (!found) {
+                throw new IOException("Gemini response has no candidate text");
+            }
+            return stripCodeFence(parser.getText());
+        }
+    }
+
+    // Advances within the current object to the named field, skipping the values of other fields
+    private boolean moveToField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private boolean enterFirstArrayObject(JsonParser parser) throws IOException {
+        return parser.nextToken() == JsonToken.START_ARRAY && parser.nextToken() == JsonToken.START_OBJECT;
+    }
+
+    private String stripCodeFence(String text) {
+        String content = text.strip();
+        if (content.startsWith(CODE_FENCE)) {
+            // Drop the opening fence line, including any language tag such as ```json
+            int firstLineEnd = content.indexOf('\n');
+            content = firstLineEnd >= 0 ? content.substring(firstLineEnd + 1) : "";
+        }
+        if (content.endsWith(CODE_FENCE)) {
+            content = content.substring(0, content.length() - CODE_FENCE.length());
+        }
+        return content.strip();
+    }
+
+    private Recommendation buildRecommendation(Activity activity, GeminiAnalysis analysisJson) {
+        GeminiAnalysis.Analysis analysis = analysisJson.getAnalysis();
+
+        StringBuilder fullAnalysis = new StringBuilder();
+        if (analysis != null) {
+            addAnalysisSection(fullAnalysis, analysis.getOverall(), "Overall: ");
+            addAnalysisSection(fullAnalysis, analysis.getPace(), "Pace: ");
+            addAnalysisSection(fullAnalysis, analysis.getHeartRate(), "Heart Rate: ");
+            addAnalysisSection(fullAnalysis, analysis.getCaloriesBurned(), "Calories: ");
+        }
+
+        List<String> improvements = extractImprovements(analysisJson.getImprovements());
+        List<String> suggestions = extractSuggestions(analysisJson.getSuggestions());
+        List<String> safety = extractSafetyGuidelines(analysisJson.getSafety());
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType() != null ? activity.getType().toString() : "Unknown") // Fixed
+                .recommendation(fullAnalysis.toString().trim())
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
     private Recommendation createDefaultRecommendation(Activity activity) {
         return Recommendation.builder()
                 .activityId(activity.getId())
                 .userId(activity.getUserId())
                 .activityType(activity.getType() != null ? activity.getType().toString() : "Unknown") // Fixed
-                .recommendation("Unable to generate detailed analysis. Please try again later.")
+                .recommendation(DEFAULT_ANALYSIS)
                 .improvements(Collections.singletonList("Continue with your current routine"))
                 .suggestions(Collections.singletonList("Consider consulting a fitness professional"))
                 .safety(Arrays.asList(
@@ -173,53 +304,59 @@ public class ActivityAIService {
         return "{\"success\":false,\"error\":\"Unable to generate recommendation\",\"fallbackMessage\":\"Continue your fitness journey! Focus on consistency and gradual improvement.\"}";
     }
 
-    private List<String> extractSafetyGuidelines(JsonNode safetyNode) {
+    private List<String> extractSafetyGuidelines(List<String> safetyItems) {
         List<String> safety = new ArrayList<>();
-        if (safetyNode.isArray()) {
-            safetyNode.forEach(item -> safety.add(item.asText()));
+        if (safetyItems != null) {
+            for (String item : safetyItems) {
+                safety.add(nullToEmpty(item));
+            }
         }
         return safety.isEmpty() ?
                 Arrays.asList("Follow general safety guidelines", "Stay hydrated", "Listen to your body") :
                 safety;
     }
 
-    private List<String> extractSuggestions(JsonNode suggestionsNode) {
+    private List<String> extractSuggestions(List<GeminiAnalysis.Suggestion> suggestionItems) {
         List<String> suggestions = new ArrayList<>();
-        if (suggestionsNode.isArray()) {
-            suggestionsNode.forEach(suggestion -> {
-                String workout = suggestion.path("workout").asText();
-                String description = suggestion.path("description").asText();
-                suggestions.add(String.format("%s: %s", workout, description));
-            });
+        if (suggestionItems != null) {
+            for (GeminiAnalysis.Suggestion suggestion : suggestionItems) {
+                if (suggestion != null) {
+                    suggestions.add(nullToEmpty(suggestion.getWorkout()) + ": " + nullToEmpty(suggestion.getDescription()));
+                }
+            }
         }
         return suggestions.isEmpty() ?
                 Collections.singletonList("No specific suggestions provided") :
                 suggestions;
     }
 
-    private List<String> extractImprovements(JsonNode improvementsNode) {
+    private List<String> extractImprovements(List<GeminiAnalysis.Improvement> improvementItems) {
         List<String> improvements = new ArrayList<>();
-        if (improvementsNode.isArray()) {
-            improvementsNode.forEach(improvement -> {
-                String area = improvement.path("area").asText();
-                String detail = improvement.path("recommendation").asText();
-                improvements.add(String.format("%s: %s", area, detail));
-            });
+        if (improvementItems != null) {
+            for (GeminiAnalysis.Improvement improvement : improvementItems) {
+                if (improvement != null) {
+                    improvements.add(nullToEmpty(improvement.getArea()) + ": " + nullToEmpty(improvement.getRecommendation()));
+                }
+            }
         }
         return improvements.isEmpty() ?
                 Collections.singletonList("No specific improvements provided") :
                 improvements;
     }
 
-    private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
-        if (!analysisNode.path(key).isMissingNode()) {
+    private void addAnalysisSection(StringBuilder fullAnalysis, String section, String prefix) {
+        if (section != null) {
             fullAnalysis.append(prefix)
-                    .append(analysisNode.path(key).asText())
+                    .append(section)
                     .append("\n\n");
         }
     }
 
-    private String createPromptForActivity(Activity activity) {
+    private String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    String createPromptForActivity(Activity activity) {
         return String.format("""
                 Analyze this fitness activity and provide detailed recommendations in the following EXACT JSON format:
                 {
@@ -264,4 +401,57 @@ public class ActivityAIService {
                 activity.getAdditionalMatrices() != null ? activity.getAdditionalMatrices().toString() : "None"
         );
     }
+
+    private String createPromptForActivities(List<Activity> activities) {
+        StringBuilder prompt = new StringBuilder("""
+                Analyze each of the following fitness activities and provide detailed recommendations.
+                Respond with a JSON array containing one object per activity, in the following EXACT JSON format:
+                [
+                  {
+                    "activityId": "Id of the analyzed activity",
+                    "analysis": {
+                      "overall": "Overall analysis here",
+                      "pace": "Pace analysis here",
+                      "heartRate": "Heart rate analysis here",
+                      "caloriesBurned": "Calories analysis here"
+                    },
+                    "improvements": [
+                      {
+                        "area": "Area name",
+                        "recommendation": "Detailed recommendation"
+                      }
+                    ],
+                    "suggestions": [
+                      {
+                        "workout": "Workout name",
+                        "description": "Detailed workout description"
+                      }
+                    ],
+                    "safety": [
+                      "Safety point 1",
+                      "Safety point 2"
+                    ]
+                  }
+                ]
+
+                Analyze these activities:
+                """);
+
+        for (Activity activity : activities) {
+            prompt.append("\nActivity Id: ").append(activity.getId())
+                    .append("\nActivity Type: ").append(activity.getType() != null ? activity.getType().toString() : "Unknown")
+                    .append("\nDuration: ").append(activity.getDuration() != null ? activity.getDuration() : 0).append(" minutes")
+                    .append("\nCalories Burned: ").append(activity.getCaloriesBurned() != null ? activity.getCaloriesBurned() : 0)
+                    .append("\nStart Time: ").append(activity.getStartTime() != null ? activity.getStartTime().toString() : "Not specified")
+                    .append("\nAdditional Metrics: ").append(activity.getAdditionalMatrices() != null ? activity.getAdditionalMatrices().toString() : "None")
+                    .append("\n");
+        }
+
+        prompt.append("""
+
+                Provide detailed analysis focusing on performance, improvements, next workout suggestions, and safety guidelines.
+                Ensure the response is a JSON array following the EXACT format shown above, with exactly one entry per activity id.
+                """);
+        return prompt.toString();
+    }
 }
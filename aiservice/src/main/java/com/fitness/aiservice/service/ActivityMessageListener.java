@@ -3,57 +3,207 @@ package com.fitness.aiservice.service;
 import com.fitness.aiservice.model.Activity;
 import com.fitness.aiservice.model.Recommendation;
 import com.fitness.aiservice.repository.RecommendationRepository;
+import com.fitness.aiservice.repository.RecommendationUpsertRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.dao.DataAccessException;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityMessageListener {
     private final ActivityAIService aiService;
     private final RecommendationRepository recommendationRepository;
+    private final RecommendationUpsertRepository recommendationUpsertRepository;
+    private final RecommendationService recommendationService;
+    private final RecommendationPushHub recommendationPushHub;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queueName;
+
+    @Value("${rabbitmq.dead-letter.queue:activity.queue.dlq}")
+    private String deadLetterQueueName;
+
+    // Recommendations generated but not saved yet, by activity id. A delivery retried after a failed
+    // save reuses the answer instead of paying for another generation.
+    private final Cache<String, Recommendation> unsaved = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
 
-    @RabbitListener(queues = "${rabbitmq.queue.name}")
-    public void processActivity(Activity activity) {
+    private Timer queueLag;
+    private Timer queueDwell;
+
+    @PostConstruct
+    void registerMetrics() {
+        queueLag = Timer.builder("activity.queue.lag")
+                .description("Time between the activity being saved and its message being consumed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        queueDwell = Timer.builder("activity.queue.dwell")
+                .description("Time between the activity event being published and consumed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("activity.queue.depth", () -> queueInfo().getMessageCount())
+                .description("Messages ready in the activity queue")
+                .register(meterRegistry);
+        Gauge.builder("activity.queue.consumers", () -> queueInfo().getConsumerCount())
+                .description("Consumers attached to the activity queue")
+                .register(meterRegistry);
+        Gauge.builder("activity.queue.dead-lettered", () -> queueInfo(deadLetterQueueName).getMessageCount())
+                .description("Activities in the dead-letter queue after exhausting the listener retries")
+                .register(meterRegistry);
+    }
+
+    // Acknowledged when this method returns, i.e. only once the recommendation is saved.
+    // Persistence errors propagate so the container retries the message instead of dropping it.
+    // Events are delivered at least once; a duplicate for an activity that already has its
+    // recommendation is acknowledged without calling Gemini again.
+    @RabbitListener(queues = "${rabbitmq.queue.name}", autoStartup = "#{!${gemini.batch.enabled:false}}")
+    public void processActivity(Activity activity,
+                                @Header(name = AmqpHeaders.TIMESTAMP, required = false) Date publishedAt) {
         log.info("Received activity for processing: {}", activity.getId());
+        recordQueueLag(activity, publishedAt);
+        if (recommendationRepository.findByActivityId(activity.getId()).isPresent()) {
+            log.info("Activity {} already has a recommendation, skipping duplicate event", activity.getId());
+            return;
+        }
 
-        try {
-            // Generate recommendation
-            Recommendation recommendation = aiService.generateRecommendationSync(activity);
-            log.info("Generated Recommendation for activity {}: {}",
-                    activity.getId(), recommendation.getRecommendation());
-
-            // Log the recommendation object before saving
-            log.debug("Recommendation object to save: {}", recommendation);
-
-            // Save the Recommendation object
-            Recommendation savedRecommendation = recommendationRepository.save(recommendation);
-            log.info("Successfully saved recommendation with ID: {} for activity: {}",
-                    savedRecommendation.getId(), activity.getId());
-
-            // Verify the save operation
-            if (savedRecommendation.getId() != null) {
-                log.info("Recommendation saved successfully with database ID: {}", savedRecommendation.getId());
-
-                // Optional: Verify by reading back from database
-                recommendationRepository.findById(savedRecommendation.getId())
-                        .ifPresentOrElse(
-                                found -> log.info("Verification successful: Found recommendation in database"),
-                                () -> log.warn("Verification failed: Recommendation not found in database")
-                        );
-            } else {
-                log.error("Save operation failed: No ID returned for recommendation");
-            }
+        // Generate recommendation
+        Recommendation recommendation = unsavedOrGenerate(activity);
+        log.info("Generated Recommendation for activity {}: {}",
+                activity.getId(), recommendation.getRecommendation());
+
+        // Log the recommendation object before saving
+        log.debug("Recommendation object to save: {}", recommendation);
+
+        // Save the Recommendation object
+        Recommendation savedRecommendation = Observation.createNotStarted("recommendation.save", observationRegistry)
+                .contextualName("save recommendation")
+                .observe(() -> recommendationUpsertRepository.insertIfAbsent(recommendation));
+        unsaved.invalidate(activity.getId());
+        log.info("Successfully saved recommendation with ID: {} for activity: {}",
+                savedRecommendation.getId(), activity.getId());
+        recommendationService.onRecommendationSaved(savedRecommendation);
+        recommendationPushHub.publish(savedRecommendation);
+    }
+
+    // Generated outside the cache rather than in a mapping function: the Gemini call can take seconds
+    // with retries and hedging, and would hold the cache's bin lock for as long
+    private Recommendation unsavedOrGenerate(Activity activity) {
+        Recommendation recommendation = unsaved.getIfPresent(activity.getId());
+        if (recommendation == null) {
+            recommendation = aiService.generateRecommendationSync(activity);
+            unsaved.put(activity.getId(), recommendation);
+        }
+        return recommendation;
+    }
 
-        } catch (DataAccessException e) {
-            log.error("Database error while processing activity {}: {}", activity.getId(), e.getMessage(), e);
-            // Implement retry logic or dead letter queue here
-        } catch (Exception e) {
-            log.error("Unexpected error processing activity {}: {}", activity.getId(), e.getMessage(), e);
-            // You might want to implement retry logic or dead letter queue here
+    // Used instead of processActivity when gemini.batch.enabled is set; same ack-after-save semantics
+    @RabbitListener(queues = "${rabbitmq.queue.name}", containerFactory = "batchListenerContainerFactory",
+            autoStartup = "${gemini.batch.enabled:false}")
+    public void processActivities(List<Message<Activity>> messages) {
+        log.info("Received batch of {} activities for processing", messages.size());
+        messages.forEach(message -> recordQueueLag(message.getPayload(),
+                message.getHeaders().get(AmqpHeaders.TIMESTAMP, Date.class)));
+        List<Activity> received = messages.stream().map(Message::getPayload).toList();
+        Set<String> answered = recommendationRepository.findByActivityIdIn(
+                        received.stream().map(Activity::getId).toList()).stream()
+                .map(Recommendation::getActivityId)
+                .collect(Collectors.toSet());
+        // Duplicates within the batch or of already answered activities are dropped
+        List<Activity> activities = received.stream()
+                .filter(activity -> !answered.contains(activity.getId()))
+                .filter(distinctBy(Activity::getId))
+                .toList();
+        if (activities.isEmpty()) {
+            log.info("All {} activities already have recommendations, skipping duplicate events", received.size());
+            return;
         }
+
+        Map<String, Recommendation> reused = unsaved.getAllPresent(activities.stream().map(Activity::getId).toList());
+        List<Activity> toGenerate = activities.stream()
+                .filter(activity -> !reused.containsKey(activity.getId()))
+                .toList();
+        List<Recommendation> recommendations = new ArrayList<>(reused.values());
+        if (!toGenerate.isEmpty()) {
+            List<Recommendation> generated = aiService.generateRecommendationsBatch(toGenerate);
+            generated.forEach(recommendation -> unsaved.put(recommendation.getActivityId(), recommendation));
+            recommendations.addAll(generated);
+        }
+        List<Recommendation> savedRecommendations = Observation.createNotStarted("recommendation.save", observationRegistry)
+                .contextualName("save recommendations")
+                .observe(() -> recommendations.stream()
+                        .map(recommendationUpsertRepository::insertIfAbsent)
+                        .toList());
+        unsaved.invalidateAll(reused.keySet());
+        unsaved.invalidateAll(toGenerate.stream().map(Activity::getId).toList());
+        savedRecommendations.forEach(saved -> {
+            recommendationService.onRecommendationSaved(saved);
+            recommendationPushHub.publish(saved);
+        });
+        log.info("Successfully saved {} recommendations", recommendations.size());
+    }
+
+    // Lag covers the whole hop from save to consume, dwell only the time in the broker; the
+    // difference is spent in the activity service's outbox
+    private void recordQueueLag(Activity activity, Date publishedAt) {
+        if (activity.getCreatedAt() != null) {
+            Duration lag = Duration.between(activity.getCreatedAt(), LocalDateTime.now());
+            if (!lag.isNegative()) {
+                queueLag.record(lag);
+            }
+        }
+        if (publishedAt != null) {
+            long dwellMillis = System.currentTimeMillis() - publishedAt.getTime();
+            if (dwellMillis >= 0) {
+                queueDwell.record(dwellMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static <T> Predicate<T> distinctBy(Function<T, Object> key) {
+        Set<Object> seen = new HashSet<>();
+        return value -> seen.add(key.apply(value));
+    }
+
+    private QueueInformation queueInfo() {
+        return queueInfo(queueName);
+    }
+
+    private QueueInformation queueInfo(String name) {
+        QueueInformation info = amqpAdmin.getQueueInfo(name);
+        return info != null ? info : new QueueInformation(name, 0, 0);
     }
-}
\ No newline at end of file
+}
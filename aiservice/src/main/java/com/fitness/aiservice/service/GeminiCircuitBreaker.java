@@ -0,0 +1,78 @@
+package com.fitness.aiservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+// Consecutive-failure circuit breaker for the Gemini API. While open, calls fail fast so callers
+// fall back to a default recommendation instead of waiting on a degraded upstream.
+@Slf4j
+public class GeminiCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInProgress;
+
+    public GeminiCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    // In HALF_OPEN only a single trial call is let through until it reports back
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            trialInProgress = false;
+            log.info("Gemini circuit breaker half-open, allowing a trial call");
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInProgress) {
+                    yield false;
+                }
+                trialInProgress = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Gemini circuit breaker closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Gemini circuit breaker opened after {} consecutive failures", consecutiveFailures);
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            trialInProgress = false;
+        }
+    }
+
+    // The caller gave up before making the call it was admitted for; frees the HALF_OPEN trial slot
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            trialInProgress = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -1,18 +1,39 @@
 package com.fitness.aiservice.service;
 
+import com.fitness.aiservice.config.HttpClientPools;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Slf4j
 public class GeminiService {
     private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
 
     @Value("${gemini.api.url}")
     private String apiUrl;
@@ -20,16 +41,119 @@ public class GeminiService {
     @Value("${gemini.api.key}")
     private String apiKey;
 
-    public GeminiService(WebClient.Builder webClientBuilder) {
+    @Value("${gemini.max-in-flight:8}")
+    private int maxInFlight;
+
+    // Per-attempt timeout follows the observed p99 latency, clamped to [min, max]
+    @Value("${gemini.resilience.timeout.min:5s}")
+    private Duration minTimeout;
+
+    @Value("${gemini.resilience.timeout.max:60s}")
+    private Duration maxTimeout;
+
+    @Value("${gemini.resilience.timeout.p99-multiplier:2.0}")
+    private double timeoutMultiplier;
+
+    @Value("${gemini.resilience.timeout.min-samples:20}")
+    private long timeoutMinSamples;
+
+    @Value("${gemini.resilience.retry.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${gemini.resilience.retry.backoff:500ms}")
+    private Duration retryBackoff;
+
+    @Value("${gemini.resilience.hedge.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${gemini.resilience.hedge.delay:10s}")
+    private Duration hedgeDelay;
+
+    @Value("${gemini.resilience.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${gemini.resilience.circuit-breaker.open-duration:30s}")
+    private Duration openDuration;
+
+    // Caps concurrent Gemini calls independently of the number of queue consumers
+    private Semaphore inFlight;
+    private GeminiCircuitBreaker circuitBreaker;
+    private Timer latency;
+    private Counter timeouts;
+    private Counter hedgesSkipped;
+
+    public GeminiService(WebClient.Builder webClientBuilder, HttpClientPools pools, MeterRegistry meterRegistry,
+                         ObservationRegistry observationRegistry) {
         this.webClient = webClientBuilder
+                .clientConnector(pools.connector("gemini"))
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024)) // 10MB
                 .build();
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        inFlight = new Semaphore(maxInFlight, true);
+        circuitBreaker = new GeminiCircuitBreaker(failureThreshold, openDuration);
+        latency = Timer.builder("gemini.requests.latency")
+                .description("Latency of successful Gemini API attempts")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        timeouts = Counter.builder("gemini.requests.timeouts")
+                .description("Gemini API attempts cut off by the adaptive timeout")
+                .register(meterRegistry);
+        hedgesSkipped = Counter.builder("gemini.requests.hedges.skipped")
+                .description("Hedged attempts not started because every Gemini API slot was taken")
+                .register(meterRegistry);
+
+        Gauge.builder("gemini.requests.in-flight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+                .description("Gemini API calls currently in progress")
+                .register(meterRegistry);
+        Gauge.builder("gemini.requests.timeout", this, service -> service.currentTimeout().toMillis())
+                .description("Current per-attempt Gemini API timeout")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("gemini.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Gemini circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
     }
 
     public String getAnswer(String question) {
-        log.info("Starting Gemini API call...");
-        long startTime = System.currentTimeMillis();
+        // Checked before queueing for a slot, so an open breaker fails fast even while slow calls hold every slot
+        if (!circuitBreaker.tryAcquire()) {
+            throw new RuntimeException("Gemini API circuit breaker is open, failing fast");
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            circuitBreaker.onAbandoned();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a Gemini API slot", e);
+        }
+        try {
+            String response = callGemini(question);
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        } finally {
+            inFlight.release();
+        }
+    }
 
+    // Observed as gemini.call, covering retries and hedges; the individual HTTP attempts are child spans
+    private String callGemini(String question) {
+        Duration timeout = currentTimeout();
+        return Observation.createNotStarted("gemini.call", observationRegistry)
+                .contextualName("gemini generate content")
+                .highCardinalityKeyValue("gemini.timeout", timeout.toMillis() + "ms")
+                .observe(() -> requestAnswer(question, timeout));
+    }
+
+    private String requestAnswer(String question, Duration timeout) {
         try {
             Map<String, Object> requestBody = Map.of(
                     "contents", new Object[]{
@@ -39,29 +163,100 @@ public class GeminiService {
                     }
             );
 
-            String response = webClient.post()
-                    .uri(apiUrl + "?key=" + apiKey)
-                    .header("Content-Type", "application/json")
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(60)) // 60 second timeout
+            Mono<String> attempt = Mono.defer(() -> {
+                long attemptStart = System.nanoTime();
+                return webClient.post()
+                        .uri(apiUrl + "?key=" + apiKey)
+                        .header("Content-Type", "application/json")
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(timeout)
+                        .doOnSuccess(body -> latency.record(System.nanoTime() - attemptStart, TimeUnit.NANOSECONDS))
+                        .doOnError(TimeoutException.class, e -> timeouts.increment());
+            });
+
+            // A hedged request races a second attempt started after hedgeDelay and keeps the first answer.
+            // The hedge needs a free slot of its own, so maxInFlight bounds every HTTP call.
+            Mono<String> hedge = Mono.defer(() -> {
+                if (!inFlight.tryAcquire()) {
+                    hedgesSkipped.increment();
+                    return Mono.<String>error(new HedgeSkippedException());
+                }
+                return attempt.doFinally(signal -> inFlight.release());
+            }).delaySubscription(hedgeDelay);
+            Mono<String> call = hedgingEnabled
+                    ? Mono.firstWithValue(attempt, hedge).onErrorMap(GeminiService::primaryError)
+                    : attempt;
+
+            String response = call
+                    .retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                            .jitter(0.5)
+                            .filter(this::isRetryable))
                     .block();
 
-            long endTime = System.currentTimeMillis();
-            log.info("Gemini API call completed in {} ms", (endTime - startTime));
             log.debug("Gemini API response: {}", response);
-
             return response;
 
         } catch (WebClientException e) {
-            long endTime = System.currentTimeMillis();
-            log.error("Gemini API call failed after {} ms: {}", (endTime - startTime), e.getMessage());
+            log.error("Gemini API call failed: {}", e.getMessage());
             throw new RuntimeException("Failed to get response from Gemini API", e);
         } catch (Exception e) {
-            long endTime = System.currentTimeMillis();
-            log.error("Unexpected error during Gemini API call after {} ms: {}", (endTime - startTime), e.getMessage());
+            log.error("Unexpected error during Gemini API call: {}", e.getMessage());
             throw new RuntimeException("Unexpected error calling Gemini API", e);
         }
     }
-}
\ No newline at end of file
+
+    Duration currentTimeout() {
+        if (latency.count() < timeoutMinSamples) {
+            return maxTimeout;
+        }
+        double p99Nanos = 0;
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            if (value.percentile() == 0.99) {
+                p99Nanos = value.value(TimeUnit.NANOSECONDS);
+            }
+        }
+        if (p99Nanos <= 0) {
+            // No recent samples in the percentile window
+            return maxTimeout;
+        }
+        long adaptive = (long) (p99Nanos * timeoutMultiplier);
+        return Duration.ofNanos(Math.max(minTimeout.toNanos(), Math.min(maxTimeout.toNanos(), adaptive)));
+    }
+
+    // When both attempts fail Mono.firstWithValue wraps their errors; retries go by the attempts' own failure
+    private static Throwable primaryError(Throwable error) {
+        if (Exceptions.isMultiple(error)) {
+            return primaryError(new NoSuchElementException().initCause(error));
+        }
+        if (!(error instanceof NoSuchElementException)) {
+            return error;
+        }
+        List<Throwable> causes = new ArrayList<>();
+        if (error.getCause() != null) {
+            causes.addAll(Exceptions.unwrapMultiple(error.getCause()));
+        }
+        for (Throwable suppressed : error.getSuppressed()) {
+            causes.addAll(Exceptions.unwrapMultiple(suppressed));
+        }
+        return causes.stream()
+                .filter(cause -> !(cause instanceof HedgeSkippedException))
+                .findFirst()
+                .orElse(error);
+    }
+
+    private static class HedgeSkippedException extends RuntimeException {
+        HedgeSkippedException() {
+            super("No free Gemini API slot for a hedged attempt", null, false, false);
+        }
+    }
+
+    // Client errors other than rate limiting won't succeed on a retry
+    private boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException responseError) {
+            return responseError.getStatusCode().is5xxServerError() || responseError.getStatusCode().value() == 429;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.CachedRecommendation;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.CachedRecommendationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.TreeSet;
+
+// Serves recommendations for activities whose prompt inputs are equivalent after bucketing,
+// from an in-process tier backed by an optional Mongo tier shared between instances.
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RecommendationCache {
+    private final CachedRecommendationRepository cachedRecommendationRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${recommendation.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${recommendation.cache.local-ttl:24h}")
+    private Duration localTtl;
+
+    @Value("${recommendation.cache.shared.enabled:false}")
+    private boolean sharedEnabled;
+
+    @Value("${recommendation.cache.duration-bucket-minutes:5}")
+    private int durationBucketMinutes;
+
+    @Value("${recommendation.cache.calories-bucket:50}")
+    private int caloriesBucket;
+
+    private Cache<String, CachedRecommendation> localCache;
+    private Counter sharedHits;
+    private Counter sharedMisses;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "recommendations");
+
+        sharedHits = Counter.builder("recommendation.cache.shared")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        sharedMisses = Counter.builder("recommendation.cache.shared")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public Optional<Recommendation> lookup(Activity activity) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String fingerprint = fingerprint(activity);
+        CachedRecommendation cached = localCache.getIfPresent(fingerprint);
+        if (cached == null && sharedEnabled) {
+            cached = findShared(fingerprint);
+            if (cached != null) {
+                localCache.put(fingerprint, cached);
+            }
+        }
+        if (cached != null) {
+            log.debug("Recommendation cache hit for activity {}", activity.getId());
+        }
+        return Optional.ofNullable(cached).map(entry -> toRecommendation(activity, entry));
+    }
+
+    public void store(Activity activity, Recommendation recommendation) {
+        if (!enabled) {
+            return;
+        }
+        CachedRecommendation entry = CachedRecommendation.builder()
+                .fingerprint(fingerprint(activity))
+                .recommendation(recommendation.getRecommendation())
+                .improvements(recommendation.getImprovements())
+                .suggestions(recommendation.getSuggestions())
+                .safety(recommendation.getSafety())
+                .createdAt(LocalDateTime.now())
+                .build();
+        localCache.put(entry.getFingerprint(), entry);
+        if (sharedEnabled) {
+            try {
+                cachedRecommendationRepository.save(entry);
+            } catch (Exception e) {
+                log.warn("Failed to store shared recommendation cache entry: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Type, bucketed duration and calories, and the set of metric names; start time and metric values are ignored
+    String fingerprint(Activity activity) {
+        int duration = activity.getDuration() != null ? activity.getDuration() : 0;
+        int calories = activity.getCaloriesBurned() != null ? activity.getCaloriesBurned() : 0;
+        String metricKeys = activity.getAdditionalMatrices() != null
+                ? String.join(",", new TreeSet<>(activity.getAdditionalMatrices().keySet()))
+                : "";
+
+        String canonical = (activity.getType() != null ? activity.getType().toString() : "Unknown")
+                + "|" + duration / Math.max(1, durationBucketMinutes)
+                + "|" + calories / Math.max(1, caloriesBucket)
+                + "|" + metricKeys;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private CachedRecommendation findShared(String fingerprint) {
+        try {
+            CachedRecommendation cached = cachedRecommendationRepository.findById(fingerprint).orElse(null);
+            (cached != null ? sharedHits : sharedMisses).increment();
+            return cached;
+        } catch (Exception e) {
+            log.warn("Shared recommendation cache lookup failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Recommendation toRecommendation(Activity activity, CachedRecommendation entry) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType() != null ? activity.getType().toString() : "Unknown")
+                .recommendation(entry.getRecommendation())
+                .improvements(entry.getImprovements())
+                .suggestions(entry.getSuggestions())
+                .safety(entry.getSafety())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-memory fan-out of freshly saved recommendations to the owning user's open SSE streams. Idle
+// streams are parked servlet async requests, so they hold no thread; sends run on virtual threads
+// so a slow client never stalls the queue listener. Only connections to this instance are served,
+// clients reconnect and fetch anything they missed over the regular endpoints.
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RecommendationPushHub {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${recommendation.push.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${recommendation.push.max-connections-per-user:5}")
+    private int maxConnectionsPerUser;
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+    private Counter delivered;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("recommendation.push.connections", connections, AtomicInteger::get)
+                .description("Open recommendation event streams")
+                .register(meterRegistry);
+        delivered = Counter.builder("recommendation.push.delivered")
+                .description("Recommendations pushed to subscribers")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        sender.shutdown();
+    }
+
+    public SseEmitter subscribe(String userId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        // Registered inside compute so a concurrent unsubscribe can't drop the set being added to
+        subscribers.compute(userId, (id, emitters) -> {
+            Set<SseEmitter> userEmitters = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            if (userEmitters.size() >= maxConnectionsPerUser) {
+                // A client error, not a server failure: the user has to close a stream first
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Too many recommendation streams open for user: " + userId);
+            }
+            userEmitters.add(emitter);
+            return userEmitters;
+        });
+        connections.incrementAndGet();
+
+        Runnable remove = () -> unsubscribe(userId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    public void publish(Recommendation recommendation) {
+        Set<SseEmitter> emitters = subscribers.get(recommendation.getUserId());
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            sender.execute(() -> send(recommendation.getUserId(), emitter, recommendation));
+        }
+    }
+
+    // Sends to a single stream, e.g. a recommendation that was already saved when the client subscribed
+    public void send(String userId, SseEmitter emitter, Recommendation recommendation) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(recommendation.getId())
+                    .name("recommendation")
+                    .data(recommendation));
+            delivered.increment();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping recommendation stream for user {}: {}", userId, e.getMessage());
+            unsubscribe(userId, emitter);
+        }
+    }
+
+    // Comments keep proxies from closing idle streams and surface dead connections
+    @Scheduled(fixedDelayString = "${recommendation.push.heartbeat:25s}")
+    public void heartbeat() {
+        subscribers.forEach((userId, emitters) -> emitters.forEach(emitter -> sender.execute(() -> {
+            try {
+                emitter.send(SseEmitter.event().comment("keepalive"));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(userId, emitter);
+            }
+        })));
+    }
+
+    private void unsubscribe(String userId, SseEmitter emitter) {
+        subscribers.computeIfPresent(userId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                connections.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
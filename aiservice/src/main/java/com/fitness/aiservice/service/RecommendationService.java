@@ -1,23 +1,80 @@
 package com.fitness.aiservice.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fitness.aiservice.model.Recommendation;
 import com.fitness.aiservice.repository.RecommendationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RecommendationService {
     private final RecommendationRepository recommendationRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${recommendation.read-cache.maximum-size:50000}")
+    private long maximumSize;
+
+    // Recommendations never change once saved, so activity entries only leave the cache by size or age
+    @Value("${recommendation.read-cache.activity-ttl:1h}")
+    private Duration activityTtl;
+
+    // User lists are invalidated by this instance's listener; the TTL bounds staleness from other instances
+    @Value("${recommendation.read-cache.user-ttl:30s}")
+    private Duration userTtl;
+
+    private Cache<String, CachedBody> activityResponses;
+    private Cache<String, CachedBody> userResponses;
+
+    // Serialized response body with its validators, so repeat reads neither query Mongo nor re-serialize
+    public record CachedBody(byte[] body, String eTag, Instant lastModified) {
+    }
+
+    @PostConstruct
+    void init() {
+        activityResponses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(activityTtl)
+                .recordStats()
+                .build();
+        userResponses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(userTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, activityResponses, "recommendation-responses", "scope", "activity");
+        CaffeineCacheMetrics.monitor(meterRegistry, userResponses, "recommendation-responses", "scope", "user");
+    }
 
     public List<Recommendation> getUserRecommendation(String userId) {
         return recommendationRepository.findByUserId(userId);
     }
 
+    public Optional<Recommendation> findActivityRecommendation(String activityId) {
+        return recommendationRepository.findByActivityId(activityId);
+    }
+
     public Recommendation getActivityRecommendation(String activityId) {
         log.debug("Fetching recommendation for activity: {}", activityId);
         return recommendationRepository.findByActivityId(activityId)
@@ -27,4 +84,69 @@ public class RecommendationService {
                 });
     }
 
+    public CachedBody getUserRecommendationBody(String userId) {
+        return userResponses.get(userId, id -> {
+            List<Recommendation> recommendations = getUserRecommendation(id);
+            Instant lastModified = recommendations.stream()
+                    .map(Recommendation::getCreatedAt)
+                    .filter(Objects::nonNull)
+                    .max(LocalDateTime::compareTo)
+                    .map(RecommendationService::toInstant)
+                    .orElse(null);
+            byte[] body = serialize(recommendations);
+            return new CachedBody(body, contentETag(body), lastModified);
+        });
+    }
+
+    // Misses aren't cached: the recommendation usually shows up shortly after the activity is tracked
+    public CachedBody getActivityRecommendationBody(String activityId) {
+        CachedBody cached = activityResponses.getIfPresent(activityId);
+        if (cached != null) {
+            return cached;
+        }
+        CachedBody body = toBody(getActivityRecommendation(activityId));
+        activityResponses.put(activityId, body);
+        return body;
+    }
+
+    // A recommendation is immutable, so its activity id is enough to revalidate without a lookup
+    public String activityETag(String activityId) {
+        return "\"" + activityId + "\"";
+    }
+
+    // Called by the listener once a recommendation is persisted
+    public void onRecommendationSaved(Recommendation recommendation) {
+        if (recommendation.getActivityId() != null) {
+            activityResponses.put(recommendation.getActivityId(), toBody(recommendation));
+        }
+        if (recommendation.getUserId() != null) {
+            userResponses.invalidate(recommendation.getUserId());
+        }
+    }
+
+    private CachedBody toBody(Recommendation recommendation) {
+        Instant lastModified = recommendation.getCreatedAt() != null ? toInstant(recommendation.getCreatedAt()) : null;
+        return new CachedBody(serialize(recommendation), activityETag(recommendation.getActivityId()), lastModified);
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize recommendations", e);
+        }
+    }
+
+    private static String contentETag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
 }
@@ -0,0 +1,175 @@
+package com.fitness.aiservice.config;
+
+import com.fitness.aiservice.InMemoryTracingConfiguration;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.observation.ObservationAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.opentelemetry.OpenTelemetryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.MicrometerTracingAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.OpenTelemetryTracingAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The activity service -> AI service hop over rabbitmq: with observation enabled on the template (as in
+// activity-service.yml) and on the listener container (as in ai-service.yml), the listener runs in the
+// publisher's trace. Uses an embedded AMQP 0-9-1 broker.
+@SpringBootTest(classes = RabbitTracePropagationTest.TracedListener.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.cloud.config.enabled=false",
+                "management.tracing.sampling.probability=1.0",
+                "spring.rabbitmq.template.observation-enabled=true",
+                "spring.rabbitmq.listener.simple.observation-enabled=true"
+        })
+@ImportAutoConfiguration({
+        ObservationAutoConfiguration.class,
+        MetricsAutoConfiguration.class,
+        CompositeMeterRegistryAutoConfiguration.class,
+        SimpleMetricsExportAutoConfiguration.class,
+        OpenTelemetryAutoConfiguration.class,
+        OpenTelemetryTracingAutoConfiguration.class,
+        MicrometerTracingAutoConfiguration.class,
+        RabbitAutoConfiguration.class
+})
+@Import(InMemoryTracingConfiguration.class)
+class RabbitTracePropagationTest {
+    static final String QUEUE = "trace.test.queue";
+
+    private static final int AMQP_PORT = freePort();
+    private static SystemLauncher broker;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private TracedListener listener;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @BeforeAll
+    static void startBroker() throws Exception {
+        Map<String, Object> context = new HashMap<>();
+        context.put("qpid.amqp_port", AMQP_PORT);
+        context.put("qpid.work_dir", Files.createTempDirectory("test-broker").toString());
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(SystemConfig.TYPE, "Memory");
+        attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION,
+                RabbitTracePropagationTest.class.getResource("/test-broker.json").toExternalForm());
+        attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+        attributes.put(SystemConfig.CONTEXT, context);
+
+        broker = new SystemLauncher();
+        broker.startup(attributes);
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        if (broker != null) {
+            broker.shutdown();
+        }
+    }
+
+    @DynamicPropertySource
+    static void rabbitProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.rabbitmq.host", () -> "localhost");
+        registry.add("spring.rabbitmq.port", () -> AMQP_PORT);
+    }
+
+    @Test
+    void listenerContinuesThePublishersTrace() throws InterruptedException {
+        String traceId;
+        Observation publish = Observation.start("activity outbox publish", observationRegistry);
+        try (Observation.Scope scope = publish.openScope()) {
+            traceId = tracer.currentSpan().context().traceId();
+            rabbitTemplate.convertAndSend("", QUEUE, "activity-1");
+        } finally {
+            publish.stop();
+        }
+
+        assertEquals(traceId, listener.traceIds.poll(10, TimeUnit.SECONDS));
+
+        tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+        assertTrue(spanExporter.getFinishedSpanItems().stream()
+                .anyMatch(span -> span.getKind() == SpanKind.PRODUCER && span.getTraceId().equals(traceId)),
+                "no producer span in trace " + traceId);
+        assertTrue(spanExporter.getFinishedSpanItems().stream()
+                .anyMatch(span -> span.getKind() == SpanKind.CONSUMER && span.getTraceId().equals(traceId)),
+                "no consumer span in trace " + traceId);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("No free port for the test broker", e);
+        }
+    }
+
+    // Records the trace each message is handled in
+    @TestConfiguration(proxyBeanMethods = false)
+    static class TracedListener {
+        final BlockingQueue<String> traceIds = new LinkedBlockingQueue<>();
+        private final Tracer tracer;
+
+        TracedListener(Tracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Bean
+        Queue traceTestQueue() {
+            return new Queue(QUEUE, false, false, true);
+        }
+
+        @RabbitListener(queues = QUEUE)
+        public void receive(String activityId) {
+            Span span = tracer.currentSpan();
+            traceIds.add(span != null ? span.context().traceId() : "no trace");
+        }
+    }
+}
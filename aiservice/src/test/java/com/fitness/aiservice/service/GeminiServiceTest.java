@@ -0,0 +1,273 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.config.HttpClientPools;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Retry, hedging, timeout and circuit breaker behaviour of GeminiService against a stub Gemini endpoint
+class GeminiServiceTest {
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final ConcurrentLinkedQueue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile StubResponse fallback = new StubResponse(200, 0, "answer");
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            StubResponse response = responses.poll();
+            if (response == null) {
+                response = fallback;
+            }
+            try {
+                Thread.sleep(response.delayMillis());
+                byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(response.status(), body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException | IOException e) {
+                // Server stopped or the client gave up on the response
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void retriesServerErrorsUntilAnAnswer() {
+        responses.add(new StubResponse(503, 0, "unavailable"));
+        responses.add(new StubResponse(500, 0, "error"));
+        GeminiService service = service(settings());
+
+        assertEquals("answer", service.getAnswer("question"));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        fallback = new StubResponse(400, 0, "bad request");
+        GeminiService service = service(settings());
+
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void cutsOffAttemptsSlowerThanTheTimeout() {
+        fallback = new StubResponse(200, 2000, "late");
+        Settings settings = settings();
+        settings.maxTimeout = Duration.ofMillis(200);
+        settings.maxRetries = 0;
+        GeminiService service = service(settings);
+
+        long started = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1.0, meterRegistry.get("gemini.requests.timeouts").counter().count());
+    }
+
+    @Test
+    void adaptsTheTimeoutToObservedLatency() {
+        fallback = new StubResponse(200, 50, "answer");
+        Settings settings = settings();
+        settings.minTimeout = Duration.ofMillis(10);
+        settings.timeoutMinSamples = 5;
+        GeminiService service = service(settings);
+
+        assertEquals(settings.maxTimeout, service.currentTimeout());
+        for (int i = 0; i < 5; i++) {
+            service.getAnswer("question");
+        }
+        Duration timeout = service.currentTimeout();
+        assertTrue(timeout.compareTo(Duration.ofMillis(100)) >= 0, "timeout " + timeout);
+        assertTrue(timeout.compareTo(Duration.ofSeconds(5)) < 0, "timeout " + timeout);
+    }
+
+    @Test
+    void hedgedAttemptAnswersWhenTheFirstIsSlow() {
+        responses.add(new StubResponse(200, 3000, "slow"));
+        Settings settings = settings();
+        settings.hedgingEnabled = true;
+        settings.hedgeDelay = Duration.ofMillis(100);
+        GeminiService service = service(settings);
+
+        long started = System.nanoTime();
+        assertEquals("answer", service.getAnswer("question"));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void skipsTheHedgeWithoutAFreeSlot() {
+        responses.add(new StubResponse(200, 500, "slow"));
+        Settings settings = settings();
+        settings.maxInFlight = 1;
+        settings.hedgingEnabled = true;
+        settings.hedgeDelay = Duration.ofMillis(50);
+        GeminiService service = service(settings);
+
+        assertEquals("slow", service.getAnswer("question"));
+        assertEquals(1, requests.get());
+        assertEquals(1.0, meterRegistry.get("gemini.requests.hedges.skipped").counter().count());
+    }
+
+    @Test
+    void skippedHedgeKeepsClientErrorsFromBeingRetried() {
+        fallback = new StubResponse(400, 200, "bad request");
+        Settings settings = settings();
+        settings.maxInFlight = 1;
+        settings.hedgingEnabled = true;
+        settings.hedgeDelay = Duration.ofMillis(50);
+        GeminiService service = service(settings);
+
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void openBreakerFailsFastWithoutCallingGemini() {
+        fallback = new StubResponse(500, 0, "error");
+        Settings settings = settings();
+        settings.maxRetries = 0;
+        settings.failureThreshold = 2;
+        GeminiService service = service(settings);
+
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker(service).getState());
+
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void halfOpenBreakerClosesAfterASuccessfulTrial() throws InterruptedException {
+        responses.add(new StubResponse(500, 0, "error"));
+        Settings settings = settings();
+        settings.maxRetries = 0;
+        settings.failureThreshold = 1;
+        settings.openDuration = Duration.ofMillis(100);
+        GeminiService service = service(settings);
+
+        assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker(service).getState());
+        Thread.sleep(150);
+
+        assertEquals("answer", service.getAnswer("question"));
+        assertEquals(GeminiCircuitBreaker.State.CLOSED, breaker(service).getState());
+    }
+
+    @Test
+    void openBreakerFailsFastWhileEverySlotIsBusy() throws Exception {
+        responses.add(new StubResponse(200, 1500, "slow"));
+        Settings settings = settings();
+        settings.maxInFlight = 1;
+        settings.failureThreshold = 1;
+        GeminiService service = service(settings);
+
+        CountDownLatch callStarted = new CountDownLatch(1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slowCall = callers.submit(() -> {
+                callStarted.countDown();
+                return service.getAnswer("question");
+            });
+            callStarted.await();
+            while (requests.get() == 0) {
+                Thread.sleep(10);
+            }
+            breaker(service).onFailure();
+
+            long started = System.nanoTime();
+            assertThrows(RuntimeException.class, () -> service.getAnswer("question"));
+            assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+            slowCall.get(5, TimeUnit.SECONDS);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private GeminiService service(Settings settings) {
+        GeminiService service = new GeminiService(WebClient.builder(), new HttpClientPools(new MockEnvironment()),
+                meterRegistry, ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(service, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/generate");
+        ReflectionTestUtils.setField(service, "apiKey", "test");
+        ReflectionTestUtils.setField(service, "maxInFlight", settings.maxInFlight);
+        ReflectionTestUtils.setField(service, "minTimeout", settings.minTimeout);
+        ReflectionTestUtils.setField(service, "maxTimeout", settings.maxTimeout);
+        ReflectionTestUtils.setField(service, "timeoutMultiplier", settings.timeoutMultiplier);
+        ReflectionTestUtils.setField(service, "timeoutMinSamples", settings.timeoutMinSamples);
+        ReflectionTestUtils.setField(service, "maxRetries", settings.maxRetries);
+        ReflectionTestUtils.setField(service, "retryBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(service, "hedgingEnabled", settings.hedgingEnabled);
+        ReflectionTestUtils.setField(service, "hedgeDelay", settings.hedgeDelay);
+        ReflectionTestUtils.setField(service, "failureThreshold", settings.failureThreshold);
+        ReflectionTestUtils.setField(service, "openDuration", settings.openDuration);
+        service.init();
+        return service;
+    }
+
+    private static GeminiCircuitBreaker breaker(GeminiService service) {
+        return (GeminiCircuitBreaker) ReflectionTestUtils.getField(service, "circuitBreaker");
+    }
+
+    private static Settings settings() {
+        return new Settings();
+    }
+
+    private static final class Settings {
+        int maxInFlight = 4;
+        Duration minTimeout = Duration.ofSeconds(5);
+        Duration maxTimeout = Duration.ofSeconds(10);
+        double timeoutMultiplier = 2.0;
+        long timeoutMinSamples = 20;
+        int maxRetries = 2;
+        boolean hedgingEnabled = false;
+        Duration hedgeDelay = Duration.ofSeconds(10);
+        int failureThreshold = 5;
+        Duration openDuration = Duration.ofSeconds(30);
+    }
+
+    private record StubResponse(int status, long delayMillis, String body) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.benchmarks.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Lives in the service package to reach the package-private mapToResponse
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivityServiceBenchmark {
+
+    @Param({"10", "1000"})
+    private int activityCount;
+
+    private ActivityService activityService;
+    private Activity activity;
+    private List<Activity> activities;
+
+    @Setup
+    public void setup() {
+        // mapToResponse touches none of the collaborators
+        activityService = new ActivityService(null, null, null, null, null, null, null, null);
+        activities = IntStream.range(0, activityCount).mapToObj(BenchmarkData::activity).toList();
+        activity = activities.get(0);
+    }
+
+    @Benchmark
+    public ActivityResponse mapToResponse() {
+        return activityService.mapToResponse(activity);
+    }
+
+    // Same shape as getUserActivities after the repository call
+    @Benchmark
+    public List<ActivityResponse> mapActivityList() {
+        return activities.stream()
+                .map(activityService::mapToResponse)
+                .collect(Collectors.toList());
+    }
+}
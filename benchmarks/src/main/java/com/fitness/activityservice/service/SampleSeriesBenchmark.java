@@ -0,0 +1,135 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.SampleSeries;
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Map-of-arrays metrics versus compact SampleSeries for a workout with one sample per second:
+// encode* is the write path up to the BSON bytes handed to the driver, decode* the read path from
+// BSON bytes to sample values. Document sizes are printed at setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleSeriesBenchmark {
+
+    @Param({"600", "3600"})
+    private int samples;
+
+    private final DocumentCodec codec = new DocumentCodec();
+    private List<Integer> heartRate;
+    private List<Double> pace;
+    private byte[] mapDocument;
+    private byte[] compactDocument;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        heartRate = new ArrayList<>(samples);
+        pace = new ArrayList<>(samples);
+        int bpm = 120;
+        double minutesPerKm = 5.5;
+        for (int i = 0; i < samples; i++) {
+            bpm = Math.max(90, Math.min(190, bpm + random.nextInt(5) - 2));
+            minutesPerKm = Math.max(3.5, Math.min(8.0, minutesPerKm + (random.nextInt(21) - 10) / 100.0));
+            heartRate.add(bpm);
+            pace.add(Math.round(minutesPerKm * 100) / 100.0);
+        }
+
+        mapDocument = encodeMapDocument();
+        compactDocument = encodeCompactDocument();
+        System.out.printf("%n%d samples: map document %d bytes, compact document %d bytes%n",
+                samples, mapDocument.length, compactDocument.length);
+    }
+
+    @Benchmark
+    public byte[] encodeMapDocument() {
+        Document document = new Document("additionalMetrics", new Document("heartRate", heartRate).append("pace", pace));
+        return toBytes(document);
+    }
+
+    @Benchmark
+    public byte[] encodeCompactDocument() {
+        Document series = new Document()
+                .append("heartRate", toDocument(SampleSeriesCodec.encode(heartRate, 3)))
+                .append("pace", toDocument(SampleSeriesCodec.encode(pace, 3)));
+        return toBytes(new Document("sampleSeries", series));
+    }
+
+    @Benchmark
+    public double decodeMapDocument() {
+        Document metrics = fromBytes(mapDocument).get("additionalMetrics", Document.class);
+        double sum = 0;
+        for (String name : List.of("heartRate", "pace")) {
+            for (Object value : metrics.getList(name, Object.class)) {
+                sum += ((Number) value).doubleValue();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double decodeCompactDocument() {
+        Document series = fromBytes(compactDocument).get("sampleSeries", Document.class);
+        double sum = 0;
+        for (String name : List.of("heartRate", "pace")) {
+            Document encoded = series.get(name, Document.class);
+            SampleSeries sampleSeries = SampleSeries.builder()
+                    .count(encoded.getInteger("count"))
+                    .decimals(encoded.getInteger("decimals"))
+                    .floating(encoded.getBoolean("floating"))
+                    .data(encoded.get("data", Binary.class).getData())
+                    .build();
+            for (Number value : SampleSeriesCodec.lazyList(sampleSeries)) {
+                sum += value.doubleValue();
+            }
+        }
+        return sum;
+    }
+
+    private static Document toDocument(SampleSeries series) {
+        return new Document(Map.of(
+                "encoding", series.getEncoding(),
+                "count", series.getCount(),
+                "decimals", series.getDecimals(),
+                "floating", series.isFloating(),
+                "data", new Binary(series.getData())));
+    }
+
+    private byte[] toBytes(Document document) {
+        ByteBuffer buffer = new RawBsonDocument(document, codec).getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private Document fromBytes(byte[] bytes) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+            return codec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+}
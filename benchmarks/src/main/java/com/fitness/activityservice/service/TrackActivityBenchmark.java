@@ -0,0 +1,126 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.ActivityRepository;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.benchmarks.BenchmarkData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of trackActivity with in-memory collaborators, with and without the per-request ERROR
+// logging it used to do. trackActivityWithLegacyLogging replays those statements against a
+// synchronous file appender (see logback.xml), so the difference is the cost that was removed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TrackActivityBenchmark {
+    private static final Logger legacyLog = LoggerFactory.getLogger("legacy.ActivityService");
+
+    private ActivityService activityService;
+    private ActivityRequest request;
+
+    @Setup
+    public void setup() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserValidationService userValidationService = new UserValidationService(null, meterRegistry) {
+            @Override
+            public boolean validateUser(String userId) {
+                return true;
+            }
+        };
+        ActivityRollupService activityRollupService = new ActivityRollupService(null, meterRegistry) {
+            @Override
+            public void recordAll(Collection<Activity> activities) {
+            }
+        };
+        activityService = new ActivityService(newActivityRepository(), userValidationService, null,
+                BenchmarkData.objectMapper(), activityRollupService, new SampleSeriesCodec(),
+                new TraceContextPropagation(Tracer.NOOP, Propagator.NOOP), meterRegistry);
+        activityService.registerMetrics();
+
+        Activity fixture = BenchmarkData.activity(1);
+        request = new ActivityRequest();
+        request.setUserId(UUID.randomUUID().toString());
+        request.setType(ActivityType.RUNNING);
+        request.setDuration(fixture.getDuration());
+        request.setCaloriesBurned(fixture.getCaloriesBurned());
+        request.setStartTime(fixture.getStartTime());
+        request.setAdditionalMetrics(fixture.getAdditionalMatrices());
+    }
+
+    @Benchmark
+    public ActivityResponse trackActivity() {
+        return activityService.trackActivity(request);
+    }
+
+    @Benchmark
+    public ActivityResponse trackActivityWithLegacyLogging() {
+        logLikeBefore(request.getUserId());
+        return activityService.trackActivity(request);
+    }
+
+    // The statements trackActivity emitted for every successful request
+    private static void logLikeBefore(String userId) {
+        legacyLog.error("🔥🔥🔥 ACTIVITY SERVICE - trackActivity METHOD CALLED 🔥🔥🔥");
+        legacyLog.error("🔥🔥🔥 USER ID: {} 🔥🔥🔥", userId);
+        legacyLog.error("🔥🔥🔥 CALLING validateUser... 🔥🔥🔥");
+        legacyLog.error("🔍🔍🔍 VALIDATION ATTEMPT - User ID Format Check: {} 🔍🔍🔍", userId);
+        legacyLog.error("🔍🔍🔍 User ID Length: {} 🔍🔍🔍", userId != null ? userId.length() : "NULL");
+        legacyLog.error("🔍🔍🔍 User ID is UUID format: {} 🔍🔍🔍", isValidUUID(userId));
+        legacyLog.error("🔍🔍🔍 ATTEMPTING USER VALIDATION CALL... 🔍🔍🔍");
+        legacyLog.error("🔍🔍🔍 USER VALIDATION CALL COMPLETED SUCCESSFULLY 🔍🔍🔍");
+        legacyLog.error("🔥🔥🔥 validateUser RETURNED: {} 🔥🔥🔥", true);
+        legacyLog.error("🔥🔥🔥 VALIDATION PASSED - CREATING ACTIVITY 🔥🔥🔥");
+        legacyLog.error("🔥🔥🔥 ACTIVITY SAVED WITH ID: {} 🔥🔥🔥", new ObjectId().toHexString());
+    }
+
+    private static boolean isValidUUID(String uuid) {
+        try {
+            UUID.fromString(uuid);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Echoes saved activities back with a generated id, like Mongo would
+    private static ActivityRepository newActivityRepository() {
+        return (ActivityRepository) Proxy.newProxyInstance(
+                ActivityRepository.class.getClassLoader(),
+                new Class<?>[]{ActivityRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        Activity activity = (Activity) args[0];
+                        activity.setId(new ObjectId().toHexString());
+                        yield activity;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
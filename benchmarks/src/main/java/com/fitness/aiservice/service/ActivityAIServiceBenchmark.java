@@ -0,0 +1,66 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.benchmarks.BenchmarkData;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Lives in the service package to reach the package-private prompt and parsing methods.
+// processAiResponseTree is the baseline for processAiResponse.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivityAIServiceBenchmark {
+
+    // Size of the model's answer text; real answers are usually 2-8 KB
+    @Param({"2048", "8192", "65536"})
+    private int answerBytes;
+
+    private ActivityAIService aiService;
+    private TreeResponseParser treeParser;
+    private Activity activity;
+    private String geminiResponse;
+
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        // Neither benchmarked method calls Gemini or the cache
+        aiService = new ActivityAIService(null, objectMapper, null, ObservationRegistry.NOOP);
+        treeParser = new TreeResponseParser(objectMapper);
+        activity = BenchmarkData.aiActivity(1);
+        geminiResponse = BenchmarkData.geminiResponse(objectMapper, answerBytes);
+    }
+
+    @Benchmark
+    public String createPromptForActivity() {
+        return aiService.createPromptForActivity(activity);
+    }
+
+    @Benchmark
+    public Recommendation processAiResponse() {
+        return aiService.processAiResponse(activity, geminiResponse);
+    }
+
+    // Baseline: the previous JsonNode tree parsing of the same response
+    @Benchmark
+    public Recommendation processAiResponseTree() throws Exception {
+        return treeParser.processAiResponse(activity, geminiResponse);
+    }
+}
@@ -0,0 +1,116 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Baseline for ActivityAIServiceBenchmark: the response parsing ActivityAIService used before it
+// walked the token stream, reading the Gemini envelope and the answer into JsonNode trees and
+// stripping code fences with regexes. Kept as it was, apart from the error fallback.
+class TreeResponseParser {
+    private final ObjectMapper objectMapper;
+
+    TreeResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    Recommendation processAiResponse(Activity activity, String aiResponse) throws JsonProcessingException {
+        String jsonContent = extractResponseText(aiResponse);
+        return buildRecommendation(activity, objectMapper.readTree(jsonContent));
+    }
+
+    private String extractResponseText(String aiResponse) throws JsonProcessingException {
+        JsonNode rootNode = objectMapper.readTree(aiResponse);
+
+        JsonNode textNode = rootNode.path("candidates")
+                .get(0)
+                .path("content")
+                .path("parts")
+                .get(0)
+                .path("text");
+
+        return textNode.asText()
+                .replaceAll("```json\\n", "")
+                .replaceAll("\\n```", "")
+                .trim();
+    }
+
+    private Recommendation buildRecommendation(Activity activity, JsonNode analysisJson) {
+        JsonNode analysisNode = analysisJson.path("analysis");
+
+        StringBuilder fullAnalysis = new StringBuilder();
+        addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall: ");
+        addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace: ");
+        addAnalysisSection(fullAnalysis, analysisNode, "heartRate", "Heart Rate: ");
+        addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories: ");
+
+        List<String> improvements = extractImprovements(analysisJson.path("improvements"));
+        List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
+        List<String> safety = extractSafetyGuidelines(analysisJson.path("safety"));
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType() != null ? activity.getType().toString() : "Unknown")
+                .recommendation(fullAnalysis.toString().trim())
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private List<String> extractSafetyGuidelines(JsonNode safetyNode) {
+        List<String> safety = new ArrayList<>();
+        if (safetyNode.isArray()) {
+            safetyNode.forEach(item -> safety.add(item.asText()));
+        }
+        return safety.isEmpty() ?
+                Arrays.asList("Follow general safety guidelines", "Stay hydrated", "Listen to your body") :
+                safety;
+    }
+
+    private List<String> extractSuggestions(JsonNode suggestionsNode) {
+        List<String> suggestions = new ArrayList<>();
+        if (suggestionsNode.isArray()) {
+            suggestionsNode.forEach(suggestion -> {
+                String workout = suggestion.path("workout").asText();
+                String description = suggestion.path("description").asText();
+                suggestions.add(String.format("%s: %s", workout, description));
+            });
+        }
+        return suggestions.isEmpty() ?
+                Collections.singletonList("No specific suggestions provided") :
+                suggestions;
+    }
+
+    private List<String> extractImprovements(JsonNode improvementsNode) {
+        List<String> improvements = new ArrayList<>();
+        if (improvementsNode.isArray()) {
+            improvementsNode.forEach(improvement -> {
+                String area = improvement.path("area").asText();
+                String detail = improvement.path("recommendation").asText();
+                improvements.add(String.format("%s: %s", area, detail));
+            });
+        }
+        return improvements.isEmpty() ?
+                Collections.singletonList("No specific improvements provided") :
+                improvements;
+    }
+
+    private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
+        if (!analysisNode.path(key).isMissingNode()) {
+            fullAnalysis.append(prefix)
+                    .append(analysisNode.path(key).asText())
+                    .append("\n\n");
+        }
+    }
+}
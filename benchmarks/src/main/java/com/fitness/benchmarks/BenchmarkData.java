@@ -0,0 +1,118 @@
+package com.fitness.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.aiservice.model.Recommendation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Realistic, deterministic fixtures shared by the benchmarks
+public final class BenchmarkData {
+    public static final String USER_ID = "7f3c2a1e-9b4d-4e8a-a1f2-3c5d6e7f8a9b";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 7, 30);
+
+    private BenchmarkData() {
+    }
+
+    // Configured like Spring Boot's auto-configured mapper
+    public static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public static Activity activity(int index) {
+        ActivityType[] types = ActivityType.values();
+        return Activity.builder()
+                .id(String.format("%024x", index))
+                .userId(USER_ID)
+                .type(types[index % types.length])
+                .duration(20 + index % 60)
+                .caloriesBurned(150 + index % 400)
+                .startTime(START.plusHours(index))
+                .additionalMatrices(Map.of(
+                        "heartRate", 120 + index % 40,
+                        "pace", "5:" + (10 + index % 50),
+                        "distanceKm", 3.5 + index % 10))
+                .createdAt(START.plusHours(index).plusMinutes(45))
+                .updatedAt(START.plusHours(index).plusMinutes(45))
+                .build();
+    }
+
+    public static com.fitness.aiservice.model.Activity aiActivity(int index) {
+        Activity source = activity(index);
+        com.fitness.aiservice.model.Activity activity = new com.fitness.aiservice.model.Activity();
+        activity.setId(source.getId());
+        activity.setUserId(source.getUserId());
+        activity.setType(com.fitness.aiservice.model.ActivityType.valueOf(source.getType().name()));
+        activity.setDuration(source.getDuration());
+        activity.setCaloriesBurned(source.getCaloriesBurned());
+        activity.setStartTime(source.getStartTime());
+        activity.setAdditionalMatrices(source.getAdditionalMatrices());
+        activity.setCreatedAt(source.getCreatedAt());
+        activity.setUpdatedAt(source.getUpdatedAt());
+        return activity;
+    }
+
+    public static Recommendation recommendation(int index) {
+        return Recommendation.builder()
+                .id(String.format("%024x", index + 1_000_000))
+                .activityId(String.format("%024x", index))
+                .userId(USER_ID)
+                .activityType("RUNNING")
+                .recommendation(sentences(12))
+                .improvements(List.of("Pacing: " + sentences(2), "Cadence: " + sentences(2)))
+                .suggestions(List.of("Intervals: " + sentences(3), "Recovery run: " + sentences(3)))
+                .safety(List.of("Warm up for ten minutes", "Stay hydrated", "Stop if you feel chest pain"))
+                .createdAt(START.plusHours(index))
+                .build();
+    }
+
+    // A Gemini generateContent response whose answer text is roughly targetBytes long
+    public static String geminiResponse(ObjectMapper objectMapper, int targetBytes) throws Exception {
+        int sentenceCount = Math.max(1, targetBytes / 400);
+        List<Map<String, String>> improvements = new ArrayList<>();
+        List<Map<String, String>> suggestions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            improvements.add(Map.of("area", "Area " + i, "recommendation", sentences(sentenceCount)));
+            suggestions.add(Map.of("workout", "Workout " + i, "description", sentences(sentenceCount)));
+        }
+        Map<String, Object> answer = Map.of(
+                "analysis", Map.of(
+                        "overall", sentences(sentenceCount),
+                        "pace", sentences(sentenceCount),
+                        "heartRate", sentences(sentenceCount),
+                        "caloriesBurned", sentences(sentenceCount)),
+                "improvements", improvements,
+                "suggestions", suggestions,
+                "safety", List.of("Warm up properly", "Stay hydrated", "Listen to your body"));
+        String text = "```json\n" + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(answer) + "\n```";
+
+        Map<String, Object> envelope = Map.of(
+                "candidates", List.of(Map.of(
+                        "content", Map.of("parts", List.of(Map.of("text", text)), "role", "model"),
+                        "finishReason", "STOP",
+                        "index", 0)),
+                "usageMetadata", Map.of("promptTokenCount", 412, "candidatesTokenCount", targetBytes / 4),
+                "modelVersion", "gemini-2.0-flash");
+        return objectMapper.writeValueAsString(envelope);
+    }
+
+    private static String sentences(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("Your pace stayed consistent through the middle section of the run, ")
+                    .append("which suggests a good aerobic base; try to hold it on the final kilometre ")
+                    .append("and keep your cadence around 170 steps per minute to reduce ground contact time. ")
+                    .append("Heart rate drift was modest, so the effort was sustainable. ");
+        }
+        return text.toString().trim();
+    }
+}
@@ -0,0 +1,63 @@
+package com.fitness.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Jackson round trips for the documents that cross HTTP and AMQP boundaries
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Activity activity;
+    private Recommendation recommendation;
+    private byte[] activityJson;
+    private byte[] recommendationJson;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = BenchmarkData.objectMapper();
+        activity = BenchmarkData.activity(1);
+        recommendation = BenchmarkData.recommendation(1);
+        activityJson = objectMapper.writeValueAsBytes(activity);
+        recommendationJson = objectMapper.writeValueAsBytes(recommendation);
+    }
+
+    @Benchmark
+    public byte[] serializeActivity() throws Exception {
+        return objectMapper.writeValueAsBytes(activity);
+    }
+
+    // What aiservice does with each message from activity.queue
+    @Benchmark
+    public com.fitness.aiservice.model.Activity deserializeActivityMessage() throws Exception {
+        return objectMapper.readValue(activityJson, com.fitness.aiservice.model.Activity.class);
+    }
+
+    @Benchmark
+    public byte[] serializeRecommendation() throws Exception {
+        return objectMapper.writeValueAsBytes(recommendation);
+    }
+
+    @Benchmark
+    public Recommendation deserializeRecommendation() throws Exception {
+        return objectMapper.readValue(recommendationJson, Recommendation.class);
+    }
+}
@@ -0,0 +1,153 @@
+package com.fitness.gateway.loadbalancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Round robin versus LeastLoadedLoadBalancer in front of several in-process AI-SERVICE instances,
+// each simulated by a fixed number of workers and a service time. In the slow scenario one instance
+// takes slowFactor times longer, like a node blocked on Gemini; in the down scenario it refuses
+// every request until ejected. Reports the latency callers see, including queueing on a busy
+// instance; the share of requests per instance and the failures are printed after each trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(32)
+public class LoadBalancerSelectionBenchmark {
+    private static final String SERVICE_ID = "AI-SERVICE";
+
+    @Param({"round-robin", "least-loaded"})
+    private String balancer;
+
+    @Param({"slow", "down"})
+    private String scenario;
+
+    @Param({"4"})
+    private int instances;
+
+    // Concurrent requests each instance serves before queueing
+    @Param({"8"})
+    private int workers;
+
+    @Param({"2"})
+    private long serviceTimeMillis;
+
+    @Param({"10"})
+    private int slowFactor;
+
+    private ServiceInstance[] serviceInstances;
+    private Semaphore[] capacity;
+    private AtomicLongArray served;
+    private AtomicLongArray failed;
+    private InstanceLoadTracker tracker;
+    private ReactorServiceInstanceLoadBalancer loadBalancer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serviceInstances = new ServiceInstance[instances];
+        capacity = new Semaphore[instances];
+        for (int i = 0; i < instances; i++) {
+            serviceInstances[i] = new DefaultServiceInstance("ai-service-" + i, SERVICE_ID, "localhost", 8083 + i * 10, false);
+            capacity[i] = new Semaphore(workers, true);
+        }
+        served = new AtomicLongArray(instances);
+        failed = new AtomicLongArray(instances);
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("serviceInstanceListSupplier",
+                ServiceInstanceListSuppliers.from(SERVICE_ID, serviceInstances));
+        ObjectProvider<ServiceInstanceListSupplier> suppliers = beanFactory.getBeanProvider(ServiceInstanceListSupplier.class);
+
+        tracker = new InstanceLoadTracker(Duration.ofSeconds(10), 5, Duration.ofSeconds(30), Duration.ofSeconds(60), null);
+        loadBalancer = "least-loaded".equals(balancer)
+                ? new LeastLoadedLoadBalancer(suppliers, SERVICE_ID, tracker)
+                : new RoundRobinLoadBalancer(suppliers, SERVICE_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long[] counts = new long[instances];
+        long[] failures = new long[instances];
+        long total = 0;
+        for (int i = 0; i < instances; i++) {
+            counts[i] = served.get(i);
+            failures[i] = failed.get(i);
+            total += counts[i] + failures[i];
+        }
+        System.out.printf("%n%s/%s: %d requests, served per instance %s, failed per instance %s%n",
+                balancer, scenario, total, Arrays.toString(counts), Arrays.toString(failures));
+    }
+
+    @Benchmark
+    public ServiceInstance call() throws InterruptedException {
+        Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext());
+        Response<ServiceInstance> response = loadBalancer.choose(request).block();
+        ServiceInstance instance = response.getServer();
+        tracker.onStartRequest(request, response);
+        int index = indexOf(instance);
+        if (index == 0 && "down".equals(scenario)) {
+            failed.incrementAndGet(index);
+            tracker.onComplete(new CompletionContext<ResponseData, ServiceInstance, RequestDataContext>(
+                    CompletionContext.Status.FAILED, new IllegalStateException("Connection refused"), request, response));
+            return instance;
+        }
+        long serviceTime = TimeUnit.MILLISECONDS.toNanos(serviceTimeMillis);
+        if (index == 0 && "slow".equals(scenario)) {
+            serviceTime *= slowFactor;
+        }
+        capacity[index].acquire();
+        try {
+            LockSupport.parkNanos(serviceTime);
+        } finally {
+            capacity[index].release();
+        }
+        served.incrementAndGet(index);
+        tracker.onComplete(new CompletionContext<ResponseData, ServiceInstance, RequestDataContext>(
+                CompletionContext.Status.SUCCESS, request, response));
+        return instance;
+    }
+
+    private int indexOf(ServiceInstance instance) {
+        for (int i = 0; i < serviceInstances.length; i++) {
+            if (serviceInstances[i] == instance) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown instance " + instance.getInstanceId());
+    }
+}
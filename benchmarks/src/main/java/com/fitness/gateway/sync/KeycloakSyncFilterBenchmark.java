@@ -0,0 +1,108 @@
+package com.fitness.gateway.sync;
+
+import com.fitness.gateway.config.CachingReactiveJwtDecoder;
+import com.fitness.gateway.user.RegisterRequest;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Lives in the sync package to reach the package-private getUserDetails. parseAuthorizationHeader is
+// what the filter did before it read claims from the security context; decodeToken vs
+// decodeTokenMemoized is the per-request cost of the resource server's decoding with and without
+// CachingReactiveJwtDecoder for a reused token.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeycloakSyncFilterBenchmark {
+
+    private KeycloakSyncFilter filter;
+    private String authorizationHeader;
+    private String token;
+    private Jwt jwt;
+    private ReactiveJwtDecoder decoder;
+    private ReactiveJwtDecoder cachingDecoder;
+
+    @Setup
+    public void setup() throws Exception {
+        filter = new KeycloakSyncFilter(null, null);
+        byte[] secret = new byte[32];
+
+        // Claim set modelled on a Keycloak access token
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("0d5f6c1e-3b8a-4a2c-9f7e-1b2c3d4e5f60")
+                .issuer("http://localhost:8181/realms/fitness-oauth2")
+                .audience("account")
+                .issueTime(new Date())
+                .expirationTime(new Date(System.currentTimeMillis() + 86_400_000))
+                .claim("typ", "Bearer")
+                .claim("azp", "oauth2-pkce-client")
+                .claim("scope", "openid profile email")
+                .claim("email_verified", true)
+                .claim("realm_access", Map.of("roles", List.of("offline_access", "uma_authorization", "default-roles-fitness-oauth2")))
+                .claim("email", "jane.doe@example.com")
+                .claim("preferred_username", "jane")
+                .claim("given_name", "Jane")
+                .claim("family_name", "Doe")
+                .build();
+        SignedJWT signed = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        signed.sign(new MACSigner(secret));
+        token = signed.serialize();
+        authorizationHeader = "Bearer " + token;
+
+        decoder = NimbusReactiveJwtDecoder.withSecretKey(new SecretKeySpec(secret, "HmacSHA256")).build();
+        cachingDecoder = new CachingReactiveJwtDecoder(decoder, 1_000, Duration.ofMinutes(15), null);
+        jwt = decoder.decode(token).block();
+    }
+
+    @Benchmark
+    public RegisterRequest parseAuthorizationHeader() throws Exception {
+        JWTClaimsSet claims = SignedJWT.parse(authorizationHeader.replace("Bearer ", "").trim()).getJWTClaimsSet();
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail(claims.getStringClaim("email"));
+        registerRequest.setKeycloakId(claims.getStringClaim("sub"));
+        registerRequest.setPassword("abc123");
+        registerRequest.setFirstName(claims.getStringClaim("given_name"));
+        registerRequest.setLastName(claims.getStringClaim("family_name"));
+        return registerRequest;
+    }
+
+    @Benchmark
+    public RegisterRequest getUserDetails() {
+        return filter.getUserDetails(jwt);
+    }
+
+    @Benchmark
+    public Jwt decodeToken() {
+        return decoder.decode(token).block();
+    }
+
+    @Benchmark
+    public Jwt decodeTokenMemoized() {
+        return cachingDecoder.decode(token).block();
+    }
+}
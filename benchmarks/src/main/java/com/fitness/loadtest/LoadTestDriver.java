@@ -0,0 +1,408 @@
+package com.fitness.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.benchmarks.BenchmarkData;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drives a weighted request mix through the gateway with tokens signed by the local issuer and reports
+// throughput and p50/p99/p999 per operation, the track-to-recommendation latency across the queue, and
+// p50/p99/p999 of each hop over the same window, from the timer histograms the services publish on
+// /actuator/prometheus.
+//
+// Settings are system properties: loadtest.gateway (http://localhost:8080), loadtest.activity-service
+// (http://localhost:8082), loadtest.ai-service (http://localhost:8083), loadtest.users (50),
+// loadtest.concurrency (64), loadtest.warmup-seconds (10), loadtest.duration-seconds (60),
+// loadtest.mix (track=60,list=20,page=15,recommendation=5) and loadtest.jwt.secret (or the
+// LOADTEST_JWT_SECRET environment variable), which is required and must match the gateway's.
+public class LoadTestDriver {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    // Activities whose recommendation hasn't shown up by then are dropped from the end-to-end sample
+    private static final long PIPELINE_GIVE_UP_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    enum Operation { TRACK, LIST, PAGE, RECOMMENDATION }
+
+    record LoadUser(String id, String token) {
+    }
+
+    record PendingActivity(String id, String token, long trackedAt) {
+    }
+
+    // A server-side timer, optionally narrowed to the series with one label value
+    record Hop(String name, String baseUrl, String timer, String label, String labelValue) {
+    }
+
+    record OperationSummary(long requests, long errors, double throughput, double p50, double p99, double p999) {
+    }
+
+    // Client-side results of one run, by operation name plus "track->recommend"
+    record RunSummary(Map<String, OperationSummary> operations) {
+    }
+
+    private final ObjectMapper objectMapper = BenchmarkData.objectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final String gateway = System.getProperty("loadtest.gateway", "http://localhost:8080");
+    private final String activityService = System.getProperty("loadtest.activity-service", "http://localhost:8082");
+    private final String aiService = System.getProperty("loadtest.ai-service", "http://localhost:8083");
+    private final int userCount = Integer.getInteger("loadtest.users", 50);
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+    private final String secret = signingSecret();
+    private final Map<Operation, Integer> mix = parseMix(
+            System.getProperty("loadtest.mix", "track=60,list=20,page=15,recommendation=5"));
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final Histogram pipelineLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final AtomicLong recommendationsPending = new AtomicLong();
+    private final ConcurrentLinkedDeque<PendingActivity> pendingActivities = new ConcurrentLinkedDeque<>();
+    private final List<LoadUser> users = new ArrayList<>();
+
+    private volatile boolean recording;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestDriver().run();
+    }
+
+    RunSummary run() throws Exception {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+        registerUsers();
+
+        System.out.printf("Warming up for %ds with %d workers...%n", warmupSeconds, concurrency);
+        drive(Duration.ofSeconds(warmupSeconds));
+        latencies.values().forEach(Histogram::reset);
+        errors.values().forEach(counter -> counter.set(0));
+        pipelineLatency.reset();
+
+        System.out.printf("Measuring for %ds with %d workers, mix %s...%n", durationSeconds, concurrency, mix);
+        Map<String, PrometheusScrape> before = scrapeServices();
+        recording = true;
+        drive(Duration.ofSeconds(durationSeconds));
+        recording = false;
+
+        return report(before);
+    }
+
+    // Registers the synthetic users up front so their userservice ids are known; the gateway's
+    // KeycloakSyncFilter sees them as existing users from then on.
+    private void registerUsers() throws Exception {
+        for (int i = 0; i < userCount; i++) {
+            String keycloakId = UUID.nameUUIDFromBytes(("loadtest-user-" + i).getBytes(StandardCharsets.UTF_8)).toString();
+            String email = "loadtest-user-" + i + "@example.com";
+            String token = mintToken(keycloakId, email, i);
+
+            Map<String, String> body = Map.of(
+                    "email", email,
+                    "password", "loadtest",
+                    "keycloakId", keycloakId,
+                    "firstName", "Load",
+                    "lastName", "User " + i);
+            HttpResponse<String> response = send(post("/api/users/register", token, body));
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Registering load-test user failed with " + response.statusCode()
+                        + ": " + response.body());
+            }
+            users.add(new LoadUser(objectMapper.readTree(response.body()).get("id").asText(), token));
+        }
+        System.out.printf("Registered %d load-test users%n", users.size());
+    }
+
+    private String mintToken(String keycloakId, String email, int index) throws Exception {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(keycloakId)
+                .issuer("loadtest")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(12))))
+                .claim("email", email)
+                .claim("given_name", "Load")
+                .claim("family_name", "User " + index)
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(secret.getBytes(StandardCharsets.UTF_8)));
+        return jwt.serialize();
+    }
+
+    private void drive(Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        execute(pickOperation());
+                    }
+                });
+            }
+        }
+    }
+
+    private Operation pickOperation() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        return Operation.TRACK;
+    }
+
+    private void execute(Operation operation) {
+        LoadUser user = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+        long start = System.nanoTime();
+        try {
+            boolean ok = switch (operation) {
+                case TRACK -> track(user);
+                case LIST -> send(get("/api/activities", user)).statusCode() == 200;
+                case PAGE -> send(get("/api/activities/page?limit=20", user)).statusCode() == 200;
+                case RECOMMENDATION -> pollRecommendation();
+            };
+            if (!ok) {
+                errors.get(operation).incrementAndGet();
+            }
+        } catch (Exception e) {
+            errors.get(operation).incrementAndGet();
+        }
+        latencies.get(operation).recordValue(Math.min(System.nanoTime() - start, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    private boolean track(LoadUser user) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ActivityType[] types = ActivityType.values();
+        Map<String, Object> body = Map.of(
+                "userId", user.id(),
+                "type", types[random.nextInt(types.length)],
+                "duration", 15 + random.nextInt(90),
+                "caloriesBurned", 100 + random.nextInt(700),
+                "startTime", LocalDateTime.now().minusMinutes(random.nextInt(10_000)),
+                "additionalMetrics", Map.of("heartRate", 110 + random.nextInt(60), "distanceKm", 1 + random.nextInt(20)));
+
+        HttpResponse<String> response = send(post("/api/activities", user.token(), body));
+        if (response.statusCode() != 200) {
+            return false;
+        }
+        String activityId = objectMapper.readTree(response.body()).get("id").asText();
+        pendingActivities.addLast(new PendingActivity(activityId, user.token(), System.nanoTime()));
+        return true;
+    }
+
+    // Polls the oldest tracked activity for its recommendation; once it appears, the time since it was
+    // tracked is the end-to-end latency through the outbox, the queue, Gemini and Mongo.
+    private boolean pollRecommendation() throws Exception {
+        PendingActivity pending = pendingActivities.pollFirst();
+        if (pending == null) {
+            return true;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(gateway + "/api/recommendations/activity/" + pending.id()))
+                .header("Authorization", "Bearer " + pending.token())
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        HttpResponse<String> response = send(request);
+        long age = System.nanoTime() - pending.trackedAt();
+        if (response.statusCode() == 200) {
+            if (recording) {
+                pipelineLatency.recordValue(Math.min(age, HIGHEST_TRACKABLE_NANOS));
+            }
+            return true;
+        }
+        // Not generated yet: the service answers with an error until the recommendation is saved
+        if (age < PIPELINE_GIVE_UP_NANOS) {
+            pendingActivities.addLast(pending);
+        }
+        recommendationsPending.incrementAndGet();
+        return true;
+    }
+
+    private HttpRequest get(String path, LoadUser user) {
+        return HttpRequest.newBuilder(URI.create(gateway + path))
+                .header("Authorization", "Bearer " + user.token())
+                .header("X-User-ID", user.id())
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, String token, Object body) throws Exception {
+        return HttpRequest.newBuilder(URI.create(gateway + path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private RunSummary report(Map<String, PrometheusScrape> before) {
+        Map<String, OperationSummary> summary = new LinkedHashMap<>();
+        System.out.println();
+        System.out.printf("%-16s %10s %8s %10s %10s %10s %10s%n", "operation", "requests", "errors", "req/s",
+                "p50 ms", "p99 ms", "p999 ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            summary.put(operation.name().toLowerCase(), summarize(histogram, errors.get(operation).get()));
+            System.out.printf("%-16s %10d %8d %10.1f %10.2f %10.2f %10.2f%n",
+                    operation.name().toLowerCase(), histogram.getTotalCount(), errors.get(operation).get(),
+                    (double) histogram.getTotalCount() / durationSeconds,
+                    millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9));
+        }
+        System.out.printf("%-16s %10d %8s %10s %10.2f %10.2f %10.2f%n", "track->recommend",
+                pipelineLatency.getTotalCount(), "-", "-",
+                millis(pipelineLatency, 50), millis(pipelineLatency, 99), millis(pipelineLatency, 99.9));
+        summary.put("track->recommend", summarize(pipelineLatency, 0));
+        System.out.printf("Recommendation polls that were not ready yet: %d%n", recommendationsPending.get());
+
+        // Server-side view of each hop over the measured window
+        System.out.println();
+        System.out.printf("%-24s %10s %10s %10s %10s%n", "hop", "count", "p50 ms", "p99 ms", "p999 ms");
+        Map<String, PrometheusScrape> after = scrapeServices();
+        for (Hop hop : List.of(
+                new Hop("gateway", gateway, "http.server.requests", null, null),
+                new Hop("activity-service", activityService, "http.server.requests", "uri", "/api/activities"),
+                new Hop("ai-service", aiService, "http.server.requests", null, null),
+                new Hop("outbox dwell", activityService, "activity.outbox.dwell", null, null),
+                new Hop("queue dwell", aiService, "activity.queue.dwell", null, null),
+                new Hop("queue lag", aiService, "activity.queue.lag", null, null),
+                new Hop("recommendation", aiService, "recommendation.generate", null, null),
+                new Hop("gemini", aiService, "gemini.call", null, null),
+                new Hop("recommendation save", aiService, "recommendation.save", null, null))) {
+            printHop(hop, before.get(hop.baseUrl()), after.get(hop.baseUrl()));
+        }
+        printGauge("outbox lag ms", activityService, "activity.outbox.lag");
+        printGauge("queue depth", aiService, "activity.queue.depth");
+        return new RunSummary(summary);
+    }
+
+    private OperationSummary summarize(Histogram histogram, long errorCount) {
+        return new OperationSummary(histogram.getTotalCount(), errorCount,
+                (double) histogram.getTotalCount() / durationSeconds,
+                millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9));
+    }
+
+    private void printHop(Hop hop, PrometheusScrape before, PrometheusScrape after) {
+        if (before == null || after == null) {
+            System.out.printf("%-24s unavailable (no /actuator/prometheus scrape of %s)%n", hop.name(), hop.baseUrl());
+            return;
+        }
+        TreeMap<Double, Double> buckets = after.buckets(hop.timer(), hop.label(), hop.labelValue(), before);
+        if (buckets.isEmpty()) {
+            System.out.printf("%-24s unavailable (no %s histogram)%n", hop.name(), hop.timer());
+            return;
+        }
+        System.out.printf("%-24s %10.0f %10.2f %10.2f %10.2f%n", hop.name(), PrometheusScrape.count(buckets),
+                PrometheusScrape.percentileMillis(buckets, 50), PrometheusScrape.percentileMillis(buckets, 99),
+                PrometheusScrape.percentileMillis(buckets, 99.9));
+    }
+
+    // By base URL; a service that can't be scraped is left out and its hops reported as unavailable
+    private Map<String, PrometheusScrape> scrapeServices() {
+        Map<String, PrometheusScrape> scrapes = new HashMap<>();
+        for (String baseUrl : List.of(gateway, activityService, aiService)) {
+            try {
+                HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus"))
+                        .GET()
+                        .build());
+                if (response.statusCode() == 200) {
+                    scrapes.put(baseUrl, PrometheusScrape.parse(response.body()));
+                } else {
+                    System.out.printf("Scraping %s/actuator/prometheus failed: HTTP %d%n", baseUrl, response.statusCode());
+                }
+            } catch (Exception e) {
+                System.out.printf("Scraping %s/actuator/prometheus failed: %s%n", baseUrl, e.getMessage());
+            }
+        }
+        return scrapes;
+    }
+
+    private void printGauge(String name, String baseUrl, String metric) {
+        try {
+            System.out.printf("%-24s %10.0f%n", name, statistic(fetchMetric(baseUrl, metric), "VALUE"));
+        } catch (Exception e) {
+            System.out.printf("%-24s unavailable (%s)%n", name, e.getMessage());
+        }
+    }
+
+    private JsonNode fetchMetric(String baseUrl, String metric) throws Exception {
+        String url = baseUrl + "/actuator/metrics/" + metric;
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(url)).GET().build());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("measurements");
+    }
+
+    private static double statistic(JsonNode measurements, String statistic) {
+        for (JsonNode measurement : measurements) {
+            if (statistic.equals(measurement.get("statistic").asText())) {
+                return measurement.get("value").asDouble();
+            }
+        }
+        return 0;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    // No built-in default, so a load-test gateway never accepts tokens signed with a well-known key
+    static String signingSecret() {
+        String secret = System.getProperty("loadtest.jwt.secret", System.getenv("LOADTEST_JWT_SECRET"));
+        if (secret == null || secret.getBytes(StandardCharsets.UTF_8).length < 32) {
+            throw new IllegalStateException("Set -Dloadtest.jwt.secret or LOADTEST_JWT_SECRET to the gateway's"
+                    + " LOADTEST_JWT_SECRET (at least 32 bytes)");
+        }
+        return secret;
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split("=");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+}
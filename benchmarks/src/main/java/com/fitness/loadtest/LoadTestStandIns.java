@@ -0,0 +1,67 @@
+package com.fitness.loadtest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Starts the in-memory stand-ins the services use under the loadtest profile: a Mongo wire-protocol
+// server, an AMQP 0-9-1 broker and a stub Gemini endpoint. Postgres is replaced by H2 inside
+// userservice and Keycloak by the HS256 tokens LoadTestDriver mints, so nothing leaves the box.
+//
+// Settings are system properties: loadtest.mongo.port (27018), loadtest.amqp.port (5673),
+// loadtest.gemini.port (8099), loadtest.gemini.median-ms (800), loadtest.gemini.p99-ms (4000),
+// loadtest.gemini.failure-rate (0.0) and loadtest.gemini.answer-bytes (4096).
+public class LoadTestStandIns {
+
+    public static void main(String[] args) throws Exception {
+        int mongoPort = Integer.getInteger("loadtest.mongo.port", 27018);
+        int amqpPort = Integer.getInteger("loadtest.amqp.port", 5673);
+        int geminiPort = Integer.getInteger("loadtest.gemini.port", 8099);
+        Duration geminiMedian = Duration.ofMillis(Long.getLong("loadtest.gemini.median-ms", 800));
+        Duration geminiP99 = Duration.ofMillis(Long.getLong("loadtest.gemini.p99-ms", 4000));
+        double geminiFailureRate = Double.parseDouble(System.getProperty("loadtest.gemini.failure-rate", "0.0"));
+        int answerBytes = Integer.getInteger("loadtest.gemini.answer-bytes", 4096);
+
+        MongoServer mongo = new MongoServer(new MemoryBackend());
+        mongo.bind("localhost", mongoPort);
+
+        SystemLauncher broker = startBroker(amqpPort);
+
+        StubGeminiServer gemini = StubGeminiServer.start(geminiPort, geminiMedian, geminiP99,
+                geminiFailureRate, answerBytes);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gemini.stop();
+            broker.shutdown();
+            mongo.shutdown();
+        }));
+
+        System.out.printf("Mongo on localhost:%d, AMQP on localhost:%d, Gemini stub on http://localhost:%d/gemini "
+                + "(median %s, p99 %s, failure rate %.2f)%n",
+                mongoPort, amqpPort, geminiPort, geminiMedian, geminiP99, geminiFailureRate);
+        Thread.currentThread().join();
+    }
+
+    private static SystemLauncher startBroker(int port) throws Exception {
+        Map<String, Object> context = new HashMap<>();
+        context.put("qpid.amqp_port", port);
+        context.put("qpid.work_dir", Files.createTempDirectory("loadtest-broker").toString());
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(SystemConfig.TYPE, "Memory");
+        attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION,
+                LoadTestStandIns.class.getResource("/loadtest-broker.json").toExternalForm());
+        attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+        attributes.put(SystemConfig.CONTEXT, context);
+
+        SystemLauncher launcher = new SystemLauncher();
+        launcher.startup(attributes);
+        return launcher;
+    }
+}
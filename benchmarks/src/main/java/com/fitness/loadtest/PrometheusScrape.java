@@ -0,0 +1,105 @@
+package com.fitness.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The timer histogram buckets of one /actuator/prometheus scrape. Buckets are cumulative since the
+// service started, so LoadTestDriver subtracts the scrape taken before the measured window from the one
+// taken after it and reads the hop percentiles from what was recorded in between.
+final class PrometheusScrape {
+    private static final String BUCKET_SUFFIX = "_seconds_bucket";
+    private static final Pattern LABEL = Pattern.compile("(\\w+)=\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    private record Series(Map<String, String> labels, TreeMap<Double, Double> buckets) {
+    }
+
+    // By metric name as published, e.g. http_server_requests_seconds_bucket
+    private final Map<String, Map<Map<String, String>, Series>> metrics = new HashMap<>();
+
+    static PrometheusScrape parse(String exposition) {
+        PrometheusScrape scrape = new PrometheusScrape();
+        for (String line : exposition.split("\n")) {
+            int labelsStart = line.indexOf('{');
+            int labelsEnd = line.lastIndexOf('}');
+            if (line.startsWith("#") || labelsStart < 0 || labelsEnd < labelsStart
+                    || !line.substring(0, labelsStart).endsWith(BUCKET_SUFFIX)) {
+                continue;
+            }
+            Map<String, String> labels = new HashMap<>();
+            Matcher label = LABEL.matcher(line.substring(labelsStart + 1, labelsEnd));
+            while (label.find()) {
+                labels.put(label.group(1), label.group(2));
+            }
+            String le = labels.remove("le");
+            String[] value = line.substring(labelsEnd + 1).trim().split(" ");
+            if (le == null || value[0].isEmpty()) {
+                continue;
+            }
+            scrape.metrics.computeIfAbsent(line.substring(0, labelsStart), name -> new HashMap<>())
+                    .computeIfAbsent(labels, key -> new Series(key, new TreeMap<>()))
+                    .buckets().put(parseBound(le), Double.parseDouble(value[0]));
+        }
+        return scrape;
+    }
+
+    // Cumulative counts by upper bound in seconds, summed over the series of the timer that carry the
+    // given label (every series when label is null) and less those already counted in the earlier scrape
+    TreeMap<Double, Double> buckets(String timer, String label, String labelValue, PrometheusScrape earlier) {
+        TreeMap<Double, Double> buckets = sum(timer, label, labelValue);
+        if (earlier != null) {
+            earlier.sum(timer, label, labelValue).forEach((bound, count) -> buckets.computeIfPresent(bound,
+                    (key, current) -> Math.max(current - count, 0)));
+        }
+        return buckets;
+    }
+
+    private TreeMap<Double, Double> sum(String timer, String label, String labelValue) {
+        TreeMap<Double, Double> buckets = new TreeMap<>();
+        Map<Map<String, String>, Series> series = metrics.getOrDefault(
+                timer.replace('.', '_') + BUCKET_SUFFIX, Map.of());
+        for (Series candidate : series.values()) {
+            if (label == null || labelValue.equals(candidate.labels().get(label))) {
+                candidate.buckets().forEach((bound, count) -> buckets.merge(bound, count, Double::sum));
+            }
+        }
+        return buckets;
+    }
+
+    static double count(TreeMap<Double, Double> buckets) {
+        return buckets.isEmpty() ? 0 : buckets.lastEntry().getValue();
+    }
+
+    // Percentile (0-100) in milliseconds, interpolated linearly within the bucket it falls in. Samples
+    // above the highest finite bound are reported as that bound.
+    static double percentileMillis(TreeMap<Double, Double> buckets, double percentile) {
+        double total = count(buckets);
+        if (total <= 0) {
+            return 0;
+        }
+        double rank = total * percentile / 100;
+        double lowerBound = 0;
+        double lowerCount = 0;
+        for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+            double upperBound = bucket.getKey();
+            double upperCount = bucket.getValue();
+            if (upperCount >= rank) {
+                if (Double.isInfinite(upperBound)) {
+                    return lowerBound * 1000;
+                }
+                double inBucket = upperCount - lowerCount;
+                double fraction = inBucket > 0 ? (rank - lowerCount) / inBucket : 1;
+                return (lowerBound + (upperBound - lowerBound) * fraction) * 1000;
+            }
+            lowerBound = upperBound;
+            lowerCount = upperCount;
+        }
+        return lowerBound * 1000;
+    }
+
+    private static double parseBound(String le) {
+        return "+Inf".equals(le) ? Double.POSITIVE_INFINITY : Double.parseDouble(le);
+    }
+}
@@ -0,0 +1,75 @@
+package com.fitness.loadtest;
+
+import com.fitness.benchmarks.BenchmarkData;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Answers Gemini generateContent calls with a canned analysis after a log-normally distributed delay
+// whose median and p99 are configurable. A failure rate can be set to exercise retries and the breaker.
+public class StubGeminiServer {
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final HttpServer server;
+    private final byte[] response;
+    private final double medianMillis;
+    private final double sigma;
+    private final double failureRate;
+
+    private StubGeminiServer(HttpServer server, byte[] response, Duration median, Duration p99, double failureRate) {
+        this.server = server;
+        this.response = response;
+        this.medianMillis = median.toMillis();
+        this.sigma = Math.log((double) Math.max(p99.toMillis(), median.toMillis()) / Math.max(1, median.toMillis())) / Z_99;
+        this.failureRate = failureRate;
+    }
+
+    public static StubGeminiServer start(int port, Duration median, Duration p99, double failureRate,
+                                         int answerBytes) throws Exception {
+        byte[] response = BenchmarkData.geminiResponse(BenchmarkData.objectMapper(), answerBytes)
+                .getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        StubGeminiServer stub = new StubGeminiServer(server, response, median, p99, failureRate);
+        server.createContext("/gemini", stub::handle);
+        // Delays are served by sleeping, so each call gets its own virtual thread
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return stub;
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+            Thread.sleep(sampleLatencyMillis());
+
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long sampleLatencyMillis() {
+        return Math.round(medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+}
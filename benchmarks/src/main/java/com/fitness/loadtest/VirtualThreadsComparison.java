@@ -0,0 +1,106 @@
+package com.fitness.loadtest;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// A/B run of the activity service with ACTIVITY_VIRTUAL_THREADS off and on. Starts the activity service
+// jar under the loadtest profile once per mode, drives the same LoadTestDriver load through the gateway
+// and prints throughput and p50/p99 side by side. The stand-ins, config server, userservice, aiservice
+// and gateway must already be running as for LoadTestDriver, with no other activity service on its port.
+//
+// Settings are system properties: loadtest.activity-service.jar
+// (../activityservice/target/activityservice-0.0.1-SNAPSHOT.jar), loadtest.activity-service
+// (http://localhost:8082) and every LoadTestDriver setting. Service output goes to
+// target/activityservice-virtual-threads-<true|false>.log.
+public class VirtualThreadsComparison {
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        Path jar = Path.of(System.getProperty("loadtest.activity-service.jar",
+                "../activityservice/target/activityservice-0.0.1-SNAPSHOT.jar"));
+        String activityService = System.getProperty("loadtest.activity-service", "http://localhost:8082");
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Activity service jar not found at " + jar.toAbsolutePath()
+                    + "; build it with (cd activityservice && ./mvnw package -DskipTests)");
+        }
+
+        Map<String, LoadTestDriver.RunSummary> results = new LinkedHashMap<>();
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            String mode = virtualThreads ? "virtual" : "platform";
+            Process service = start(jar, virtualThreads);
+            try {
+                awaitHealthy(activityService, service);
+                System.out.printf("%n=== activity service on %s threads ===%n", mode);
+                results.put(mode, new LoadTestDriver().run());
+            } finally {
+                service.destroy();
+                if (!service.waitFor(30, TimeUnit.SECONDS)) {
+                    service.destroyForcibly().waitFor();
+                }
+            }
+        }
+        print(results.get("platform"), results.get("virtual"));
+    }
+
+    private static Process start(Path jar, boolean virtualThreads) throws Exception {
+        File log = Path.of("target", "activityservice-virtual-threads-" + virtualThreads + ".log").toFile();
+        log.getParentFile().mkdirs();
+        ProcessBuilder builder = new ProcessBuilder("java", "-jar", jar.toString(), "--spring.profiles.active=loadtest")
+                .redirectErrorStream(true)
+                .redirectOutput(log);
+        builder.environment().put("ACTIVITY_VIRTUAL_THREADS", Boolean.toString(virtualThreads));
+        System.out.printf("Starting activity service with ACTIVITY_VIRTUAL_THREADS=%s (log: %s)%n", virtualThreads, log);
+        return builder.start();
+    }
+
+    private static void awaitHealthy(String baseUrl, Process service) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .GET()
+                .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!service.isAlive()) {
+                throw new IllegalStateException("Activity service exited with " + service.exitValue());
+            }
+            try {
+                HttpResponse<String> response = client.send(health, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200 && response.body().contains("\"UP\"")) {
+                    return;
+                }
+            } catch (Exception e) {
+                // Not listening yet
+            }
+            Thread.sleep(1000);
+        }
+        throw new IllegalStateException("Activity service not healthy after " + STARTUP_TIMEOUT);
+    }
+
+    private static void print(LoadTestDriver.RunSummary platform, LoadTestDriver.RunSummary virtual) {
+        System.out.println();
+        System.out.printf("%-16s %12s %12s %8s %12s %12s %8s %12s %12s%n", "operation",
+                "platform/s", "virtual/s", "change", "platform p99", "virtual p99", "change",
+                "platform p50", "virtual p50");
+        platform.operations().forEach((operation, before) -> {
+            LoadTestDriver.OperationSummary after = virtual.operations().get(operation);
+            System.out.printf("%-16s %12.1f %12.1f %8s %12.2f %12.2f %8s %12.2f %12.2f%n", operation,
+                    before.throughput(), after.throughput(), change(before.throughput(), after.throughput()),
+                    before.p99(), after.p99(), change(before.p99(), after.p99()),
+                    before.p50(), after.p50());
+        });
+    }
+
+    private static String change(double before, double after) {
+        return before > 0 ? String.format("%+.0f%%", (after - before) / before * 100) : "-";
+    }
+}
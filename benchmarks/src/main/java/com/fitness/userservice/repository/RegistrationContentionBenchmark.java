@@ -0,0 +1,159 @@
+package com.fitness.userservice.repository;
+
+import com.fitness.userservice.dto.RegisterRequest;
+import com.fitness.userservice.model.User;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Registration throughput with many threads registering the same set of users, as concurrent gateway
+// syncs do: the single-statement upsert versus the former exists/find/save sequence, which fails on
+// the unique email constraint when two threads both see the user as new. Failures are printed at the
+// end of each trial. Runs against a scratch Postgres database, FitnessUserBenchmark on localhost by
+// default (-Dbenchmark.userservice.jdbc-url plus .username/.password for another), since that is where
+// the upsert is a single INSERT ... ON CONFLICT. Other databases, e.g. an explicit H2 URL, take the
+// insert-if-absent path; the path measured is printed with the results. The users table is emptied at
+// the start of each trial, so don't point it at a database holding real users.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RegistrationContentionBenchmark {
+    private static final String SCHEMA = """
+            CREATE TABLE IF NOT EXISTS users (
+                id VARCHAR(255) PRIMARY KEY,
+                keycloak_id VARCHAR(255) UNIQUE,
+                email VARCHAR(255) NOT NULL UNIQUE,
+                password VARCHAR(255) NOT NULL,
+                first_name VARCHAR(255),
+                last_name VARCHAR(255),
+                role VARCHAR(255),
+                created_at TIMESTAMP,
+                updated_at TIMESTAMP
+            )
+            """;
+
+    // Distinct users the threads pick from: few means heavy contention on existing rows
+    @Param({"16", "100000"})
+    private int users;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private UserUpsertRepository upsertRepository;
+    private RegisterRequest[] requests;
+    private final AtomicLong failures = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.userservice.jdbc-url",
+                "jdbc:postgresql://localhost:5432/FitnessUserBenchmark"));
+        dataSource.setUsername(System.getProperty("benchmark.userservice.username", "postgres"));
+        dataSource.setPassword(System.getProperty("benchmark.userservice.password", "abc123"));
+        dataSource.setMaximumPoolSize(16);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(SCHEMA);
+        jdbcTemplate.execute("DELETE FROM users");
+        upsertRepository = new UserUpsertRepository(new NamedParameterJdbcTemplate(jdbcTemplate));
+        upsertRepository.detectDialect();
+        System.out.printf("%nupsert() measures %s%n", upsertRepository.upsertStatement());
+
+        requests = new RegisterRequest[users];
+        for (int i = 0; i < users; i++) {
+            RegisterRequest request = new RegisterRequest();
+            request.setEmail("user" + i + "@example.com");
+            request.setPassword("abc123");
+            request.setKeycloakId(UUID.nameUUIDFromBytes(("user" + i).getBytes()).toString());
+            request.setFirstName("Jane");
+            request.setLastName("Doe");
+            requests[i] = request;
+        }
+        failures.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%d users: %d failed registrations, upsert() measured %s%n", users, failures.get(),
+                upsertRepository.upsertStatement());
+        dataSource.close();
+    }
+
+    @Benchmark
+    public User upsert() {
+        try {
+            return upsertRepository.upsert(nextRequest());
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            return null;
+        }
+    }
+
+    @Benchmark
+    public User existsFindSave() {
+        RegisterRequest request = nextRequest();
+        try {
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM users WHERE email = ?", Integer.class, request.getEmail());
+            if (existing != null && existing > 0) {
+                User user = jdbcTemplate.queryForObject(
+                        "SELECT id, keycloak_id FROM users WHERE email = ?",
+                        (rs, rowNum) -> {
+                            User found = new User();
+                            found.setId(rs.getString("id"));
+                            found.setKeycloakId(rs.getString("keycloak_id"));
+                            return found;
+                        }, request.getEmail());
+                if (user.getKeycloakId() == null && request.getKeycloakId() != null) {
+                    jdbcTemplate.update("UPDATE users SET keycloak_id = ? WHERE id = ?",
+                            request.getKeycloakId(), user.getId());
+                    user.setKeycloakId(request.getKeycloakId());
+                }
+                return user;
+            }
+            User user = new User();
+            user.setId(UUID.randomUUID().toString());
+            user.setEmail(request.getEmail());
+            user.setKeycloakId(request.getKeycloakId());
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.update("""
+                    INSERT INTO users (id, keycloak_id, email, password, first_name, last_name, role, created_at, updated_at)
+                    VALUES (?, ?, ?, ?, ?, ?, 'USER', ?, ?)
+                    """, user.getId(), request.getKeycloakId(), request.getEmail(), request.getPassword(),
+                    request.getFirstName(), request.getLastName(), now, now);
+            return user;
+        } catch (DuplicateKeyException e) {
+            failures.incrementAndGet();
+            return null;
+        }
+    }
+
+    private RegisterRequest nextRequest() {
+        return requests[ThreadLocalRandom.current().nextInt(users)];
+    }
+}
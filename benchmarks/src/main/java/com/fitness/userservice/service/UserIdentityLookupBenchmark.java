@@ -0,0 +1,210 @@
+package com.fitness.userservice.service;
+
+import com.fitness.userservice.model.User;
+import com.fitness.userservice.repository.UserIdentity;
+import com.fitness.userservice.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Latency of resolving a user by keycloak id in a large users table, through the userservice's own
+// Spring Data repository: the two-column identity projection over the keycloak_id index, the same
+// lookup hydrating the full entity, the former existsById by primary key for reference, and
+// UserIdentityCache hits for a hot set of users. Runs against in-memory H2 by default; point
+// -Dbenchmark.userservice.jdbc-url (plus .username/.password) at a scratch Postgres database for
+// representative numbers. The table is populated once and reused while it holds the requested number
+// of users.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class UserIdentityLookupBenchmark {
+    private static final String SCHEMA = """
+            CREATE TABLE IF NOT EXISTS users (
+                id VARCHAR(255) PRIMARY KEY,
+                keycloak_id VARCHAR(255) UNIQUE,
+                email VARCHAR(255) NOT NULL UNIQUE,
+                password VARCHAR(255) NOT NULL,
+                first_name VARCHAR(255),
+                last_name VARCHAR(255),
+                role VARCHAR(255),
+                created_at TIMESTAMP,
+                updated_at TIMESTAMP
+            )
+            """;
+
+    // The hydrating lookup only matches on keycloak id; role carries the entity's default
+    private static final ExampleMatcher FULL_ROW_BY_KEYCLOAK_ID = ExampleMatcher.matching()
+            .withIgnorePaths("role");
+
+    @Param({"10000000"})
+    private int users;
+
+    // Users the cached benchmark picks from, sized to fit the identity cache
+    @Param({"100000"})
+    private int hotUsers;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private AnnotationConfigApplicationContext context;
+    private UserRepository userRepository;
+    private UserIdentityCache identityCache;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.userservice.jdbc-url",
+                "jdbc:h2:mem:identity;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"));
+        dataSource.setUsername(System.getProperty("benchmark.userservice.username", "sa"));
+        dataSource.setPassword(System.getProperty("benchmark.userservice.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        populate();
+
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton("dataSource", dataSource);
+        context.register(JpaConfig.class);
+        context.refresh();
+        userRepository = context.getBean(UserRepository.class);
+
+        identityCache = new UserIdentityCache(userRepository);
+        setField("maximumSize", (long) hotUsers * 2);
+        setField("ttl", Duration.ofHours(1));
+        identityCache.init();
+        for (int n = 1; n <= hotUsers; n++) {
+            identityCache.resolve(keycloakId(n));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Optional<UserIdentity> identityByKeycloakId() {
+        return userRepository.findIdentityByKeycloakId(keycloakId(randomUser(users)));
+    }
+
+    @Benchmark
+    public Optional<User> fullRowByKeycloakId() {
+        User probe = new User();
+        probe.setKeycloakId(keycloakId(randomUser(users)));
+        return userRepository.findOne(Example.of(probe, FULL_ROW_BY_KEYCLOAK_ID));
+    }
+
+    @Benchmark
+    public boolean existsById() {
+        return userRepository.existsById(id(randomUser(users)));
+    }
+
+    @Benchmark
+    public Optional<UserIdentity> cachedIdentity() {
+        return identityCache.resolve(keycloakId(randomUser(hotUsers)));
+    }
+
+    private void populate() {
+        jdbcTemplate.execute(SCHEMA);
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        if (existing != null && existing == users) {
+            return;
+        }
+        jdbcTemplate.execute("DELETE FROM users");
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        String numbers = "PostgreSQL".equalsIgnoreCase(database)
+                ? "generate_series(1, ?) AS g(x)"
+                : "SYSTEM_RANGE(1, ?)";
+        long started = System.nanoTime();
+        jdbcTemplate.update("""
+                INSERT INTO users (id, keycloak_id, email, password, first_name, last_name, role, created_at, updated_at)
+                SELECT 'id-' || x, 'kc-' || x, 'user' || x || '@example.com', 'abc123', 'Jane', 'Doe', 'USER',
+                       CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+                FROM %s
+                """.formatted(numbers), users);
+        if ("PostgreSQL".equalsIgnoreCase(database)) {
+            jdbcTemplate.execute("ANALYZE users");
+        }
+        System.out.printf("%nPopulated %d users in %d s%n", users,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = UserIdentityCache.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(identityCache, value);
+    }
+
+    private static int randomUser(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound) + 1;
+    }
+
+    private static String id(int n) {
+        return "id-" + n;
+    }
+
+    private static String keycloakId(int n) {
+        return "kc-" + n;
+    }
+
+    // The userservice persistence setup on the benchmark's datasource: the User entity mapped with
+    // Spring Boot's column naming, and the real UserRepository with its JPQL projection queries
+    @Configuration(proxyBeanMethods = false)
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class,
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = UserRepository.class))
+    static class JpaConfig {
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setPackagesToScan(User.class.getPackageName());
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of(
+                    "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                    "hibernate.hbm2ddl.auto", "none"));
+            return factory;
+        }
+
+        @Bean
+        JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+    }
+}
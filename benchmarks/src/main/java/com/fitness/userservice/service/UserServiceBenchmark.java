@@ -0,0 +1,89 @@
+package com.fitness.userservice.service;
+
+import com.fitness.userservice.dto.RegisterRequest;
+import com.fitness.userservice.dto.UserResponce;
+import com.fitness.userservice.model.User;
+import com.fitness.userservice.repository.UserIdentity;
+import com.fitness.userservice.repository.UserRepository;
+import com.fitness.userservice.repository.UserUpsertRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Measures register() around an in-memory repository, i.e. the request/entity/response mapping and logging.
+// RegistrationContentionBenchmark covers the database side.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private UserService userService;
+    private RegisterRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        userService = new UserService();
+        Field repository = UserService.class.getDeclaredField("repository");
+        repository.setAccessible(true);
+        repository.set(userService, newUserRepository());
+        Field upsertRepository = UserService.class.getDeclaredField("upsertRepository");
+        upsertRepository.setAccessible(true);
+        upsertRepository.set(userService, new UserUpsertRepository(null) {
+            @Override
+            public User upsert(RegisterRequest request) {
+                User user = new User();
+                user.setId(UUID.randomUUID().toString());
+                user.setEmail(request.getEmail());
+                user.setPassword(request.getPassword());
+                user.setKeycloakId(request.getKeycloakId());
+                user.setFirstName(request.getFirstName());
+                user.setLastName(request.getLastName());
+                return user;
+            }
+        });
+        Field identityCache = UserService.class.getDeclaredField("identityCache");
+        identityCache.setAccessible(true);
+        identityCache.set(userService, new UserIdentityCache(null) {
+            @Override
+            public void put(UserIdentity identity) {
+            }
+        });
+
+        request = new RegisterRequest();
+        request.setEmail("jane.doe@example.com");
+        request.setPassword("abc123");
+        request.setKeycloakId(UUID.randomUUID().toString());
+        request.setFirstName("Jane");
+        request.setLastName("Doe");
+    }
+
+    @Benchmark
+    public UserResponce registerNewUser() {
+        return userService.register(request);
+    }
+
+    // register() no longer touches the JPA repository
+    private static UserRepository newUserRepository() {
+        return (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
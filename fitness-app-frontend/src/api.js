@@ -131,6 +131,64 @@ export const getActivityDetail = async (id) => {
 };
 
 
+// Streams the recommendation for an activity as soon as aiservice saves it (server-sent events).
+// EventSource can't send the Authorization header, so the stream is read with fetch.
+// Returns a function that closes the stream.
+export const subscribeToRecommendation = (activityId, onRecommendation) => {
+    const controller = new AbortController();
+    const headers = { Accept: 'text/event-stream' };
+    const token = localStorage.getItem('token');
+    const userId = localStorage.getItem('userId');
+    if (token) {
+        headers['Authorization'] = `Bearer ${token}`;
+    }
+    if (userId) {
+        headers['X-User-ID'] = userId;
+    }
+
+    const read = async () => {
+        const response = await fetch(`${API_URL}/recommendations/stream?activityId=${encodeURIComponent(activityId)}`,
+            { headers, signal: controller.signal });
+        if (!response.ok) {
+            // 429 when this user already has the maximum number of open streams
+            throw new Error(`Recommendation stream refused: HTTP ${response.status}`);
+        }
+        const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+        let buffer = '';
+        for (;;) {
+            const { value, done } = await reader.read();
+            if (done) {
+                return;
+            }
+            buffer += value;
+            const events = buffer.split('\n\n');
+            buffer = events.pop();
+            for (const event of events) {
+                const data = event.split('\n')
+                    .filter(line => line.startsWith('data:'))
+                    .map(line => line.slice(5))
+                    .join('\n');
+                if (!data) {
+                    continue;
+                }
+                const recommendation = JSON.parse(data);
+                if (recommendation.activityId === activityId) {
+                    onRecommendation(recommendation);
+                    controller.abort();
+                    return;
+                }
+            }
+        }
+    };
+
+    read().catch(error => {
+        if (error.name !== 'AbortError') {
+            console.warn('⚠️ Recommendation stream closed:', error);
+        }
+    });
+    return () => controller.abort();
+};
+
 // Helper function to test API connectivity
 export const testConnection = async () => {
     try {
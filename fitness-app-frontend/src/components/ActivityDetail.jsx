@@ -1,6 +1,6 @@
 import React, { useEffect, useState } from 'react';
 import { useParams, useNavigate } from 'react-router';
-import { getActivityDetail } from '../api';
+import { getActivityDetail, subscribeToRecommendation } from '../api';
 import { 
   Box, 
   Card, 
@@ -27,6 +27,10 @@ const ActivityDetail = () => {
   const [error, setError] = useState(null);
 
   useEffect(() => {
+  // Set by the cleanup; the fetch below may still be pending then and must not subscribe afterwards
+  let cancelled = false;
+  let unsubscribe = null;
+
   const fetchActivityDetail = async () => {
     if (!id) {
       setError('Activity ID is required');
@@ -40,6 +44,9 @@ const ActivityDetail = () => {
       
       console.log('🔍 Fetching activity detail for ID:', id);
       const response = await getActivityDetail(id);
+      if (cancelled) {
+        return;
+      }
       console.log('✅ Full API response:', response);
       console.log('📊 Response data:', response.data);
       console.log('🏃 Activity type:', response.data?.type);
@@ -47,15 +54,32 @@ const ActivityDetail = () => {
       console.log('🔥 Calories:', response.data?.caloriesBurned);
       
       setActivity(response.data);
+
+      // The recommendation is generated asynchronously; wait for it to be pushed instead of polling
+      if (!response.data?.recommendation) {
+        unsubscribe = subscribeToRecommendation(id, (recommendation) => {
+          if (!cancelled) {
+            setActivity(current => ({ ...current, ...recommendation, id: current.id }));
+          }
+        });
+      }
     } catch (error) {
       console.error('❌ Error fetching activity detail:', error);
-      setError(error.message || 'Failed to fetch activity details');
+      if (!cancelled) {
+        setError(error.message || 'Failed to fetch activity details');
+      }
     } finally {
-      setLoading(false);
+      if (!cancelled) {
+        setLoading(false);
+      }
     }
   };
 
   fetchActivityDetail();
+  return () => {
+    cancelled = true;
+    unsubscribe?.();
+  };
 }, [id]);
 
 
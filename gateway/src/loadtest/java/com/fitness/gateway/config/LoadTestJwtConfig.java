@@ -0,0 +1,34 @@
+package com.fitness.gateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+// Under the loadtest profile tokens are minted locally by the load driver, so Keycloak isn't needed.
+// Only compiled into builds made with -Ploadtest, and refuses to start without a signing secret.
+@Configuration
+@Profile("loadtest")
+public class LoadTestJwtConfig {
+    // HS256 needs a key of at least 256 bits
+    private static final int MIN_SECRET_BYTES = 32;
+
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder(@Value("${loadtest.jwt.secret:}") String secret) {
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("loadtest.jwt.secret (LOADTEST_JWT_SECRET) must be set to at least "
+                    + MIN_SECRET_BYTES + " bytes under the loadtest profile");
+        }
+        SecretKeySpec key = new SecretKeySpec(secretBytes, "HmacSHA256");
+        return NimbusReactiveJwtDecoder.withSecretKey(key)
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.fitness.gateway.config;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One Reactor Netty connection pool per downstream target instead of the shared default provider.
+// Settings come from http-client.pools.<name>.*, falling back to http-client.defaults.*. Pools
+// export reactor.netty.connection.provider.* metrics (active, idle, pending connections and
+// acquire time) tagged with the pool name.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HttpClientPools {
+    private final Environment environment;
+
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+
+    public ClientHttpConnector connector(String name) {
+        return new ReactorClientHttpConnector(httpClient(name));
+    }
+
+    public HttpClient httpClient(String name) {
+        ConnectionProvider provider = providers.computeIfAbsent(name, this::newProvider);
+        HttpProtocol[] protocols = setting(name, "protocols", HttpProtocol[].class, new HttpProtocol[]{HttpProtocol.HTTP11});
+        HttpClient client = HttpClient.create(provider)
+                .protocol(protocols)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) setting(name, "connect-timeout", Duration.class, Duration.ofSeconds(2)).toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true);
+        Duration responseTimeout = setting(name, "response-timeout", Duration.class, Duration.ofSeconds(10));
+        // Zero leaves the timeout to the caller, e.g. GeminiService's adaptive one
+        return responseTimeout.isZero() ? client : client.responseTimeout(responseTimeout);
+    }
+
+    @PreDestroy
+    void close() {
+        providers.values().forEach(ConnectionProvider::dispose);
+    }
+
+    private ConnectionProvider newProvider(String name) {
+        int maxConnections = setting(name, "max-connections", Integer.class, 100);
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                // Bounded so a slow target fails fast instead of queueing requests without limit
+                .pendingAcquireMaxCount(setting(name, "pending-acquire-max-count", Integer.class, maxConnections * 2))
+                .pendingAcquireTimeout(setting(name, "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5)))
+                // Below the target's keep-alive timeout, so the pool closes idle connections before the server does
+                .maxIdleTime(setting(name, "max-idle-time", Duration.class, Duration.ofSeconds(15)))
+                .maxLifeTime(setting(name, "max-life-time", Duration.class, Duration.ofMinutes(5)))
+                .evictInBackground(setting(name, "evict-interval", Duration.class, Duration.ofSeconds(30)))
+                .lifo()
+                .metrics(true)
+                .build();
+        log.info("HTTP client pool {}: {} connections", name, maxConnections);
+        return provider;
+    }
+
+    private <T> T setting(String name, String key, Class<T> type, T fallback) {
+        T shared = environment.getProperty("http-client.defaults." + key, type, fallback);
+        return environment.getProperty("http-client.pools." + name + "." + key, type, shared);
+    }
+}
@@ -1,24 +1,38 @@
 package com.fitness.gateway.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebFluxSecurity
 public class SecurityConfig {
 
+    @Value("${jwt.decoder.cache.maximum-size:100000}")
+    private long decoderCacheSize;
+
+    // Upper bound on how long a decoded token is reused, whatever its expiry says
+    @Value("${jwt.decoder.cache.maximum-ttl:15m}")
+    private Duration decoderCacheTtl;
+
     @Bean
-    public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http, ReactiveJwtDecoder jwtDecoder,
+                                                            MeterRegistry meterRegistry) {
+        ReactiveJwtDecoder cachingDecoder = new CachingReactiveJwtDecoder(jwtDecoder, decoderCacheSize,
+                decoderCacheTtl, meterRegistry);
         return http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange(exchange -> exchange
                         .pathMatchers("/actuator/**").permitAll()
                         .anyExchange().authenticated())
-                .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults()))
+                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.jwtDecoder(cachingDecoder)))
                 .build();
     }
-}
\ No newline at end of file
+}
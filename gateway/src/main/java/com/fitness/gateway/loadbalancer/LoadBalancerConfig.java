@@ -0,0 +1,36 @@
+package com.fitness.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// Replaces round robin with LeastLoadedLoadBalancer for every lb:// route and @LoadBalanced WebClient
+@Configuration
+@ConditionalOnProperty(name = "loadbalancer.least-loaded.enabled", matchIfMissing = true)
+@LoadBalancerClients(defaultConfiguration = LeastLoadedLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+
+    // How quickly old latency samples stop counting, and how soon an idle slow instance is retried
+    @Value("${loadbalancer.least-loaded.latency-decay:10s}")
+    private Duration latencyDecay;
+
+    @Value("${loadbalancer.least-loaded.ejection.consecutive-failures:5}")
+    private int ejectionFailures;
+
+    @Value("${loadbalancer.least-loaded.ejection.duration:30s}")
+    private Duration ejectionDuration;
+
+    // Requests never reported back (e.g. cancelled by the client) stop counting as in flight after this
+    @Value("${loadbalancer.least-loaded.max-request-age:60s}")
+    private Duration maxRequestAge;
+
+    @Bean
+    public InstanceLoadTracker instanceLoadTracker(MeterRegistry meterRegistry) {
+        return new InstanceLoadTracker(latencyDecay, ejectionFailures, ejectionDuration, maxRequestAge, meterRegistry);
+    }
+}
@@ -2,52 +2,63 @@ package com.fitness.gateway.sync;
 
 import com.fitness.gateway.user.RegisterRequest;
 import com.fitness.gateway.user.UserService;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.config.annotation.web.reactive.WebFluxSecurityConfiguration;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
+
+// Runs right after the security filter chain and reads the claims of the token it already decoded
+// and validated, instead of parsing the Authorization header a second time
 @Component
 @Slf4j
 @RequiredArgsConstructor
-public class KeycloakSyncFilter implements WebFilter {
+public class KeycloakSyncFilter implements WebFilter, Ordered {
+    static final int ORDER = WebFluxSecurityConfiguration.WEB_FILTER_CHAIN_FILTER_ORDER + 1;
+
     private final UserService userService;
+    private final UserSyncCache userSyncCache;
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        String token = exchange.getRequest().getHeaders().getFirst("Authorization");
-        String userId = exchange.getRequest().getHeaders().getFirst("X-User-ID");
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .map(authentication -> Optional.of(getUserDetails(((JwtAuthenticationToken) authentication).getToken())))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(registerRequest -> sync(exchange, chain, registerRequest.orElse(null)));
+    }
 
-        RegisterRequest registerRequest = getUserDetails(token);
+    private Mono<Void> sync(ServerWebExchange exchange, WebFilterChain chain, RegisterRequest registerRequest) {
+        String userId = exchange.getRequest().getHeaders().getFirst("X-User-ID");
 
         if (userId == null && registerRequest != null) {
             userId = registerRequest.getKeycloakId();
         }
 
-        if (userId != null && token != null) {
+        if (userId != null && registerRequest != null) {
             String finalUserId = userId;
-            return userService.validateUser(userId)
-                    .flatMap(exist -> {
-                        if (!exist) {
-                            // Register User
-                            if (registerRequest != null) {
-                                return userService.registerUser(registerRequest)
-                                        .doOnError(error -> log.error("User registration failed: {}", error.getMessage()))
-                                        .then(Mono.empty());
-                            } else {
-                                return Mono.empty();
-                            }
-                        } else {
-                            log.info("User already exists, skipping sync.");
-                            return Mono.empty();
-                        }
-                    })
+            // Known users are served from the cache and skip the userservice round trip
+            Mono<Void> sync = registerRequest.getKeycloakId() != null
+                    ? userSyncCache.sync(userId, registerRequest)
+                    : userService.validateUser(userId).then();
+            return sync
                     .then(Mono.defer(() -> {
                         ServerHttpRequest mutatedRequest = exchange.getRequest().mutate()
                                 .header("X-User-ID", finalUserId)
@@ -60,29 +71,13 @@ public class KeycloakSyncFilter implements WebFilter {
         return chain.filter(exchange);
     }
 
-    private RegisterRequest getUserDetails(String token) {
-        try {
-            if (token == null || token.trim().isEmpty()) {
-                return null;
-            }
-
-            String tokenWithoutBearer = token.replace("Bearer ", "").trim();
-            SignedJWT signedJWT = SignedJWT.parse(tokenWithoutBearer);
-            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
-
-            RegisterRequest registerRequest = new RegisterRequest();
-            registerRequest.setEmail(claims.getStringClaim("email"));
-            registerRequest.setKeycloakId(claims.getStringClaim("sub"));
-            registerRequest.setPassword("abc123");
-            registerRequest.setFirstName(claims.getStringClaim("given_name"));
-            registerRequest.setLastName(claims.getStringClaim("family_name"));
-
-            return registerRequest;
-        } catch (Exception e) {
-            log.error("Error parsing JWT token: {}", e.getMessage());
-            return null;
-        }
+    RegisterRequest getUserDetails(Jwt jwt) {
+        RegisterRequest registerRequest = new RegisterRequest();
+        registerRequest.setEmail(jwt.getClaimAsString("email"));
+        registerRequest.setKeycloakId(jwt.getSubject());
+        registerRequest.setPassword("abc123");
+        registerRequest.setFirstName(jwt.getClaimAsString("given_name"));
+        registerRequest.setLastName(jwt.getClaimAsString("family_name"));
+        return registerRequest;
     }
-
-
-}
\ No newline at end of file
+}
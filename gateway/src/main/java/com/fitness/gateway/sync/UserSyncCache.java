@@ -0,0 +1,97 @@
+package com.fitness.gateway.sync;
+
+import com.fitness.gateway.user.RegisterRequest;
+import com.fitness.gateway.user.UserService;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Remembers which Keycloak subjects are known to userservice so the sync round trip only happens on
+// the first request of a user. Concurrent first requests share one in-flight sync, so registerUser
+// runs once per user; failed syncs aren't cached and are retried on the next request.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserSyncCache {
+    private final UserService userService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user-sync.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${user-sync.cache.ttl:30m}")
+    private Duration ttl;
+
+    // Entries older than this are re-validated in the background on their next hit
+    @Value("${user-sync.cache.refresh-after:10m}")
+    private Duration refreshAfter;
+
+    private AsyncLoadingCache<String, SyncedUser> cache;
+
+    record SyncedUser(String userId, RegisterRequest registerRequest) {
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<SyncedUser> asyncLoad(String subject, Executor executor) {
+                        // Entries are only created through sync(), which supplies the registration details
+                        return CompletableFuture.failedFuture(
+                                new IllegalStateException("No registration details for " + subject));
+                    }
+
+                    @Override
+                    public CompletableFuture<SyncedUser> asyncReload(String subject, SyncedUser synced, Executor executor) {
+                        return syncWithUserService(synced).toFuture();
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user-sync");
+        Gauge.builder("user.sync.cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .description("Share of gateway requests that skipped the userservice sync")
+                .register(meterRegistry);
+    }
+
+    // Completes once the user behind the token exists in userservice, registering it if needed
+    public Mono<Void> sync(String userId, RegisterRequest registerRequest) {
+        SyncedUser user = new SyncedUser(userId, registerRequest);
+        // Waiters share the cached future, so one caller cancelling must not cancel it for the others
+        return Mono.fromFuture(cache.get(registerRequest.getKeycloakId(),
+                        (subject, executor) -> syncWithUserService(user).toFuture()), true)
+                .then();
+    }
+
+    public void invalidate(String subject) {
+        cache.synchronous().invalidate(subject);
+    }
+
+    private Mono<SyncedUser> syncWithUserService(SyncedUser user) {
+        return userService.validateUser(user.userId())
+                .flatMap(exist -> {
+                    if (exist) {
+                        return Mono.just(user);
+                    }
+                    return userService.registerUser(user.registerRequest())
+                            .doOnError(error -> log.error("User registration failed: {}", error.getMessage()))
+                            .thenReturn(user);
+                });
+    }
+}
@@ -1,39 +1,73 @@
 package com.fitness.gateway.user;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
+    private static final ParameterizedTypeReference<Map<String, Boolean>> USER_EXISTS = new ParameterizedTypeReference<>() {};
+
     private final WebClient userServiceWebClient;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user-validation.batch.window:2ms}")
+    private Duration batchWindow;
+
+    @Value("${user-validation.batch.max-size:100}")
+    private int maxBatchSize;
 
+    private UserValidationBatcher batcher;
+
+    @PostConstruct
+    void init() {
+        batcher = new UserValidationBatcher(this::fetchUsersExist, batchWindow, maxBatchSize,
+                DistributionSummary.builder("user.validation.batch.size")
+                        .description("User ids per bulk validation call")
+                        .register(meterRegistry));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batcher.shutdown();
+    }
+
+    // Concurrent validations, e.g. a burst of first requests after a restart, share bulk calls
     public Mono<Boolean> validateUser(String userId) {
-        log.info("Calling user validation API for userId: {}", userId);
+        // The batch future is shared, so one subscriber cancelling must not cancel it for the others
+        return Mono.fromFuture(() -> batcher.load(userId), true)
+                .onErrorResume(error -> {
+                    log.error("Error validating user {}: {}", userId, error.getMessage());
+                    return Mono.just(false);
+                });
+    }
 
-        return userServiceWebClient.get()
-                .uri("/api/users/{userId}/validate", userId)
+    private CompletableFuture<Map<String, Boolean>> fetchUsersExist(Set<String> userIds) {
+        log.debug("Calling bulk user validation API for {} users", userIds.size());
+        return userServiceWebClient.post()
+                .uri("/api/users/validate")
+                .bodyValue(Map.of("userIds", userIds))
                 .retrieve()
-                .bodyToMono(Boolean.class)
-                .onErrorResume(WebClientResponseException.class, e -> {
-                    if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                        log.warn("User not found: {}", userId);
-                        return Mono.just(false);
-                    } else if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
-                        log.warn("Invalid user ID: {}", userId);
-                        return Mono.just(false);
-                    } else {
-                        log.error("Error validating user: {}. Status: {}", userId, e.getStatusCode());
-                        return Mono.just(false);
-                    }
-                })
-                .defaultIfEmpty(false);
+                .bodyToMono(USER_EXISTS)
+                .defaultIfEmpty(Map.of())
+                .toFuture();
     }
 
     public Mono<UserResponce> registerUser(RegisterRequest request) {
@@ -1,13 +1,18 @@
 package com.fitness.userservice.controller;
 
 import com.fitness.userservice.dto.RegisterRequest;
+import com.fitness.userservice.dto.UserImportRequest;
+import com.fitness.userservice.dto.UserImportResponse;
 import com.fitness.userservice.dto.UserResponce;
+import com.fitness.userservice.dto.UserValidationRequest;
 import com.fitness.userservice.service.UserService;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/users")
 @AllArgsConstructor
@@ -24,8 +29,18 @@ public class UserController {
         return ResponseEntity.ok(userService.register(request));
     }
 
+    @PostMapping("/import")
+    public ResponseEntity<UserImportResponse> importUsers(@Valid @RequestBody UserImportRequest request){
+        return ResponseEntity.ok(userService.importUsers(request));
+    }
+
     @GetMapping("/{userId}/validate")
     public ResponseEntity<Boolean> validateUser(@PathVariable String userId){
         return ResponseEntity.ok(userService.existByUserId(userId));
     }
+
+    @PostMapping("/validate")
+    public ResponseEntity<Map<String, Boolean>> validateUsers(@Valid @RequestBody UserValidationRequest request){
+        return ResponseEntity.ok(userService.existByUserIds(request.getUserIds()));
+    }
 }
\ No newline at end of file
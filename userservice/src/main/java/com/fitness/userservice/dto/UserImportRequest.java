@@ -0,0 +1,11 @@
+package com.fitness.userservice.dto;
+
+import jakarta.validation.Valid;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserImportRequest {
+    private List<@Valid RegisterRequest> users;
+}
@@ -0,0 +1,9 @@
+package com.fitness.userservice.dto;
+
+import lombok.Data;
+
+@Data
+public class UserImportResponse {
+    private int received;
+    private int written;  // Inserted, or existing users given a keycloak id
+}
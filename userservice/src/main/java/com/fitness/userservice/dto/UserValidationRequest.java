@@ -0,0 +1,12 @@
+package com.fitness.userservice.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.Set;
+
+@Data
+public class UserValidationRequest {
+    @NotNull(message = "User ids are required")
+    private Set<String> userIds;
+}
@@ -7,8 +7,9 @@ import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
+// Users are resolved by keycloak id as often as by id, the gateway forwards the token subject
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "users_keycloak_id_idx", columnList = "keycloak_id", unique = true))
 @Data
 public class User {
     @Id
@@ -0,0 +1,5 @@
+package com.fitness.userservice.repository;
+
+// Projection of a user onto its two identifiers; keycloakId is null for users that never logged in through Keycloak
+public record UserIdentity(String id, String keycloakId) {
+}
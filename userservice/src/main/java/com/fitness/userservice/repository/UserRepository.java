@@ -2,10 +2,27 @@ package com.fitness.userservice.repository;
 
 import com.fitness.userservice.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
     boolean existsByEmail(String email);
     User findByEmail(String email);
+
+    // Identity lookups select only the two id columns instead of hydrating the entity
+    @Query("select new com.fitness.userservice.repository.UserIdentity(u.id, u.keycloakId) from User u where u.id = :id")
+    Optional<UserIdentity> findIdentityById(@Param("id") String id);
+
+    @Query("select new com.fitness.userservice.repository.UserIdentity(u.id, u.keycloakId) from User u where u.keycloakId = :keycloakId")
+    Optional<UserIdentity> findIdentityByKeycloakId(@Param("keycloakId") String keycloakId);
+
+    // Matches each of the given values against both the id and the keycloak id
+    @Query("select new com.fitness.userservice.repository.UserIdentity(u.id, u.keycloakId) from User u where u.id in :ids or u.keycloakId in :ids")
+    List<UserIdentity> findIdentities(@Param("ids") Collection<String> ids);
 }
\ No newline at end of file
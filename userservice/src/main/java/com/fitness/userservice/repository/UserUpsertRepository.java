@@ -0,0 +1,178 @@
+package com.fitness.userservice.repository;
+
+import com.fitness.userservice.dto.RegisterRequest;
+import com.fitness.userservice.model.User;
+import com.fitness.userservice.model.UserRole;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Registration as a single INSERT ... ON CONFLICT statement instead of exists/find/save round trips.
+// Concurrent registrations of the same user all get the one row back rather than racing on the
+// unique email constraint. Databases without ON CONFLICT ... RETURNING (H2 under the loadtest
+// profile) use an insert-if-absent followed by a lookup.
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class UserUpsertRepository {
+    private static final String COLUMNS = "id, keycloak_id, email, password, first_name, last_name, role, created_at, updated_at";
+
+    // An existing user is only written when it gains a keycloak id, otherwise the row is just read back
+    private static final String UPSERT = """
+            INSERT INTO users (%s)
+            VALUES (:id, :keycloakId, :email, :password, :firstName, :lastName, :role, :now, :now)
+            ON CONFLICT (email) DO UPDATE
+                SET keycloak_id = EXCLUDED.keycloak_id, updated_at = EXCLUDED.updated_at
+                WHERE users.keycloak_id IS NULL AND EXCLUDED.keycloak_id IS NOT NULL
+            """.formatted(COLUMNS);
+
+    private static final String UPSERT_RETURNING = """
+            WITH upserted AS (
+                %s
+                RETURNING %s
+            )
+            SELECT %s FROM upserted
+            UNION ALL
+            SELECT %s FROM users WHERE email = :email AND NOT EXISTS (SELECT 1 FROM upserted)
+            """.formatted(UPSERT.strip(), COLUMNS, COLUMNS, COLUMNS);
+
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO users (%s)
+            VALUES (:id, :keycloakId, :email, :password, :firstName, :lastName, :role, :now, :now)
+            ON CONFLICT DO NOTHING
+            """.formatted(COLUMNS);
+
+    private static final String SET_KEYCLOAK_ID = """
+            UPDATE users SET keycloak_id = :keycloakId, updated_at = :now
+            WHERE email = :email AND keycloak_id IS NULL
+            """;
+
+    private static final String FIND_BY_EMAIL = "SELECT " + COLUMNS + " FROM users WHERE email = :email";
+    private static final String FIND_BY_KEYCLOAK_ID = "SELECT " + COLUMNS + " FROM users WHERE keycloak_id = :keycloakId";
+
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> {
+        User user = new User();
+        user.setId(rs.getString("id"));
+        user.setKeycloakId(rs.getString("keycloak_id"));
+        user.setEmail(rs.getString("email"));
+        user.setPassword(rs.getString("password"));
+        user.setFirstName(rs.getString("first_name"));
+        user.setLastName(rs.getString("last_name"));
+        String role = rs.getString("role");
+        user.setRole(role != null ? UserRole.valueOf(role) : null);
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        user.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        user.setUpdatedAt(updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        return user;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private boolean onConflictReturning;
+
+    @PostConstruct
+    void detectDialect() {
+        String database = jdbcTemplate.getJdbcTemplate().execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        onConflictReturning = "PostgreSQL".equalsIgnoreCase(database);
+        log.info("User registration upserts on {} use {}", database, upsertStatement());
+    }
+
+    // How upsert writes on this database, e.g. for benchmarks reporting what they measured
+    String upsertStatement() {
+        return onConflictReturning ? "INSERT ... ON CONFLICT ... RETURNING" : "insert-if-absent and lookup";
+    }
+
+    // Creates the user or returns the existing one with the same email, filling in a missing keycloak id.
+    // A keycloak id already bound to another email resolves to that user. Deliberately not
+    // transactional: every statement commits on its own, so the lookups after a conflict don't run
+    // in a transaction the database has already aborted.
+    public User upsert(RegisterRequest request) {
+        MapSqlParameterSource params = parameters(request, LocalDateTime.now());
+        try {
+            User user = onConflictReturning ? upsertReturning(params) : insertIfAbsent(params, request);
+            if (user != null) {
+                return user;
+            }
+        } catch (DuplicateKeyException e) {
+            if (request.getKeycloakId() == null) {
+                throw e;
+            }
+            return findOne(FIND_BY_KEYCLOAK_ID, params);
+        }
+        // Inserted and committed by a concurrent registration after this statement's snapshot was taken
+        return findOne(FIND_BY_EMAIL, params);
+    }
+
+    // Bulk import variant: one JDBC batch per call, existing users only gain a missing keycloak id.
+    // Returns the number of rows inserted or updated. A keycloak id already bound to another email
+    // rolls back the whole batch.
+    @Transactional
+    public int upsertAll(List<RegisterRequest> requests) {
+        if (!onConflictReturning) {
+            requests.forEach(this::upsert);
+            return requests.size();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        SqlParameterSource[] batch = requests.stream()
+                .map(request -> parameters(request, now))
+                .toArray(SqlParameterSource[]::new);
+        int written = 0;
+        for (int count : jdbcTemplate.batchUpdate(UPSERT, batch)) {
+            written += Math.max(count, 0);
+        }
+        return written;
+    }
+
+    private User upsertReturning(MapSqlParameterSource params) {
+        List<User> users = jdbcTemplate.query(UPSERT_RETURNING, params, USER_ROW_MAPPER);
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    private User insertIfAbsent(MapSqlParameterSource params, RegisterRequest request) {
+        jdbcTemplate.update(INSERT_IF_ABSENT, params);
+        if (request.getKeycloakId() != null) {
+            jdbcTemplate.update(SET_KEYCLOAK_ID, params);
+        }
+        List<User> users = jdbcTemplate.query(FIND_BY_EMAIL, params, USER_ROW_MAPPER);
+        if (users.isEmpty() && request.getKeycloakId() != null) {
+            // Skipped because the keycloak id belongs to a user with another email
+            return findOne(FIND_BY_KEYCLOAK_ID, params);
+        }
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    private User findOne(String sql, MapSqlParameterSource params) {
+        List<User> users = jdbcTemplate.query(sql, params, USER_ROW_MAPPER);
+        if (users.isEmpty()) {
+            throw new RuntimeException("User not found after registration: " + params.getValue("email"));
+        }
+        return users.get(0);
+    }
+
+    private static MapSqlParameterSource parameters(RegisterRequest request, LocalDateTime now) {
+        return new MapSqlParameterSource()
+                .addValue("id", UUID.randomUUID().toString())
+                .addValue("keycloakId", request.getKeycloakId())
+                .addValue("email", request.getEmail())
+                .addValue("password", request.getPassword())
+                .addValue("firstName", request.getFirstName())
+                .addValue("lastName", request.getLastName())
+                .addValue("role", UserRole.USER.name())
+                .addValue("now", Timestamp.valueOf(now));
+    }
+}
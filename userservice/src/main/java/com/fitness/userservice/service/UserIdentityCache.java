@@ -0,0 +1,95 @@
+package com.fitness.userservice.service;
+
+import com.fitness.userservice.repository.UserIdentity;
+import com.fitness.userservice.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Caches the id <-> keycloakId mapping in both directions. A mapping never changes once the keycloak
+// id is set, so entries only leave by size or age. Misses aren't cached, so new registrations are
+// found on the next lookup.
+@Component
+@RequiredArgsConstructor
+public class UserIdentityCache {
+    private final UserRepository repository;
+
+    @Value("${user.identity-cache.maximum-size:200000}")
+    private long maximumSize;
+
+    @Value("${user.identity-cache.ttl:1h}")
+    private Duration ttl;
+
+    private Cache<String, UserIdentity> byId;
+    private Cache<String, UserIdentity> byKeycloakId;
+
+    @PostConstruct
+    void init() {
+        byId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        byKeycloakId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // Accepts either identifier; keycloak ids are tried first since that's what the gateway forwards
+    public Optional<UserIdentity> resolve(String userId) {
+        UserIdentity cached = lookup(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<UserIdentity> identity = repository.findIdentityByKeycloakId(userId)
+                .or(() -> repository.findIdentityById(userId));
+        identity.ifPresent(this::put);
+        return identity;
+    }
+
+    // Resolves many identifiers with one query for the ones not cached; unknown ones are absent from the result
+    public Map<String, UserIdentity> resolveAll(Collection<String> userIds) {
+        Map<String, UserIdentity> resolved = new HashMap<>();
+        List<String> misses = userIds.stream()
+                .filter(userId -> {
+                    UserIdentity cached = lookup(userId);
+                    if (cached != null) {
+                        resolved.put(userId, cached);
+                    }
+                    return cached == null;
+                })
+                .toList();
+        if (!misses.isEmpty()) {
+            for (UserIdentity identity : repository.findIdentities(misses)) {
+                put(identity);
+                resolved.put(identity.id(), identity);
+                if (identity.keycloakId() != null) {
+                    resolved.put(identity.keycloakId(), identity);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    public void put(UserIdentity identity) {
+        byId.put(identity.id(), identity);
+        if (identity.keycloakId() != null) {
+            byKeycloakId.put(identity.keycloakId(), identity);
+        }
+    }
+
+    private UserIdentity lookup(String userId) {
+        UserIdentity identity = byKeycloakId.getIfPresent(userId);
+        return identity != null ? identity : byId.getIfPresent(userId);
+    }
+}
@@ -1,14 +1,25 @@
 package com.fitness.userservice.service;
 
 import com.fitness.userservice.dto.RegisterRequest;
+import com.fitness.userservice.dto.UserImportRequest;
+import com.fitness.userservice.dto.UserImportResponse;
 import com.fitness.userservice.dto.UserResponce;
 import com.fitness.userservice.model.User;
+import com.fitness.userservice.repository.UserIdentity;
 import com.fitness.userservice.repository.UserRepository;
-import jakarta.validation.Valid;
+import com.fitness.userservice.repository.UserUpsertRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
 @Service
 @Slf4j
 public class UserService  {
@@ -16,82 +27,85 @@ public class UserService  {
     @Autowired
     private UserRepository repository;
 
+    @Autowired
+    private UserUpsertRepository upsertRepository;
+
+    @Autowired
+    private UserIdentityCache identityCache;
+
+    @Value("${user.import.max-size:10000}")
+    private int maxImportSize;
+
+    @Value("${user.import.batch-size:500}")
+    private int importBatchSize;
+
+    @Value("${user.validation.max-ids:10000}")
+    private int maxValidationIds;
+
+    // Ids per IN list, well below the bind parameter limits of Postgres and the JDBC driver
+    @Value("${user.validation.chunk-size:1000}")
+    private int validationChunkSize;
+
+    // One upsert statement; repeated and concurrent registrations of the same user return the same row
     public UserResponce register(RegisterRequest request) {
-        log.info("=== REGISTER METHOD CALLED ===");
-        log.info("RegisterRequest received: {}", request);
-        log.info("Email: {}", request.getEmail());
-        log.info("KeycloakId from request: {}", request.getKeycloakId());
-        log.info("FirstName: {}", request.getFirstName());
-        log.info("LastName: {}", request.getLastName());
-
-        if(repository.existsByEmail(request.getEmail())){
-            log.info("User already exists with email: {}", request.getEmail());
-            User existingUser = repository.findByEmail(request.getEmail());
-            log.info("Existing user KeycloakId: {}", existingUser.getKeycloakId());
-
-            // If existing user doesn't have keycloakId but request has it, update it
-            if (existingUser.getKeycloakId() == null && request.getKeycloakId() != null) {
-                log.info("Updating existing user with KeycloakId: {}", request.getKeycloakId());
-                existingUser.setKeycloakId(request.getKeycloakId());
-                existingUser = repository.save(existingUser);
-                log.info("Updated existing user KeycloakId: {}", existingUser.getKeycloakId());
-            }
-
-            UserResponce userResponce = new UserResponce();
-            userResponce.setId(existingUser.getId());
-            userResponce.setPassword(existingUser.getPassword());
-            userResponce.setKeycloakId(existingUser.getKeycloakId());
-            userResponce.setEmail(existingUser.getEmail());
-            userResponce.setFirstName(existingUser.getFirstName());
-            userResponce.setLastName(existingUser.getLastName());
-            userResponce.setCreatedAt(existingUser.getCreatedAt());
-            userResponce.setUpdatedAt(existingUser.getUpdatedAt());
-            return userResponce;
-        }
+        User user = upsertRepository.upsert(request);
+        identityCache.put(new UserIdentity(user.getId(), user.getKeycloakId()));
+        log.debug("Registered user {} with keycloak id {}", user.getId(), user.getKeycloakId());
+        return toResponse(user);
+    }
 
-        log.info("Creating new user...");
-        User user = new User();
-        user.setEmail(request.getEmail());
-        user.setPassword(request.getPassword());
-        user.setKeycloakId(request.getKeycloakId());
-        user.setFirstName(request.getFirstName());
-        user.setLastName(request.getLastName());
-
-        log.info("User object before save:");
-        log.info("  Email: {}", user.getEmail());
-        log.info("  KeycloakId: {}", user.getKeycloakId());
-        log.info("  FirstName: {}", user.getFirstName());
-        log.info("  LastName: {}", user.getLastName());
-
-        User savedUser = repository.save(user);
-
-        log.info("User object after save:");
-        log.info("  ID: {}", savedUser.getId());
-        log.info("  Email: {}", savedUser.getEmail());
-        log.info("  KeycloakId: {}", savedUser.getKeycloakId());
-        log.info("  FirstName: {}", savedUser.getFirstName());
-        log.info("  LastName: {}", savedUser.getLastName());
+    public UserImportResponse importUsers(UserImportRequest request) {
+        List<RegisterRequest> users = request.getUsers() != null ? request.getUsers() : List.of();
+        if (users.isEmpty()) {
+            throw new RuntimeException("User import is empty");
+        }
+        if (users.size() > maxImportSize) {
+            throw new RuntimeException("User import of " + users.size() + " exceeds the limit of " + maxImportSize);
+        }
 
-        UserResponce userResponce = new UserResponce();
-        userResponce.setId(savedUser.getId());
-        userResponce.setKeycloakId(savedUser.getKeycloakId());
-        userResponce.setPassword(savedUser.getPassword());
-        userResponce.setEmail(savedUser.getEmail());
-        userResponce.setFirstName(savedUser.getFirstName());
-        userResponce.setLastName(savedUser.getLastName());
-        userResponce.setCreatedAt(savedUser.getCreatedAt());
-        userResponce.setUpdatedAt(savedUser.getUpdatedAt());
-
-        log.info("UserResponse created with KeycloakId: {}", userResponce.getKeycloakId());
-        log.info("=== REGISTER METHOD COMPLETED ===");
-        return userResponce;
+        int written = 0;
+        for (int i = 0; i < users.size(); i += importBatchSize) {
+            written += upsertRepository.upsertAll(users.subList(i, Math.min(i + importBatchSize, users.size())));
+        }
+        UserImportResponse response = new UserImportResponse();
+        response.setReceived(users.size());
+        response.setWritten(written);
+        log.info("Imported users: {} received, {} inserted or updated", response.getReceived(), response.getWritten());
+        return response;
     }
 
+    // userId may be the userservice id or the keycloak id the gateway forwards
     public UserResponce getUserProfile(String userId) {
         log.info("Getting user profile for userId: {}", userId);
-        User user = repository.findById(userId)
+        UserIdentity identity = identityCache.resolve(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = repository.findById(identity.id())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return toResponse(user);
+    }
+
+    public Boolean existByUserId(String userId) {
+        boolean exists = identityCache.resolve(userId).isPresent();
+        log.debug("User {} exists: {}", userId, exists);
+        return exists;
+    }
 
+    // userId -> exists for every requested id or keycloak id, one IN query per chunk of uncached ids
+    public Map<String, Boolean> existByUserIds(Set<String> userIds) {
+        if (userIds.size() > maxValidationIds) {
+            throw new RuntimeException("Validation of " + userIds.size() + " users exceeds the limit of " + maxValidationIds);
+        }
+        List<String> ids = userIds.stream().filter(Objects::nonNull).toList();
+        Set<String> existing = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += validationChunkSize) {
+            existing.addAll(identityCache.resolveAll(ids.subList(i, Math.min(i + validationChunkSize, ids.size()))).keySet());
+        }
+        Map<String, Boolean> results = new HashMap<>(ids.size() * 2);
+        ids.forEach(id -> results.put(id, existing.contains(id)));
+        return results;
+    }
+
+    private UserResponce toResponse(User user) {
         UserResponce userResponce = new UserResponce();
         userResponce.setId(user.getId());
         userResponce.setPassword(user.getPassword());
@@ -101,14 +115,6 @@ public class UserService  {
         userResponce.setLastName(user.getLastName());
         userResponce.setCreatedAt(user.getCreatedAt());
         userResponce.setUpdatedAt(user.getUpdatedAt());
-
         return userResponce;
     }
-
-    public Boolean existByUserId(String userId) {
-        log.info("Calling user validation API for userId: {}", userId);
-        boolean exists = repository.existsById(userId);
-        log.info("User exists: {}", exists);
-        return exists;
-    }
 }
\ No newline at end of file